@@ -56,19 +56,20 @@ public class MainActivity extends ActionBarActivity {
 
         SwipeDismissRecyclerViewTouchListener listener = new SwipeDismissRecyclerViewTouchListener.Builder(
                 recyclerView,
-                new SwipeDismissRecyclerViewTouchListener.DismissCallbacks() {
+                new SwipeDismissRecyclerViewTouchListener.BatchDismissCallbacks() {
                     @Override
                     public boolean canDismiss(int position) {
                         return true;
                     }
 
                     @Override
-                    public void onDismiss(View view) {
-                        int id = recyclerView.getChildPosition(view);
-                        adapter.mDataset.remove(id);
-                        adapter.notifyDataSetChanged();
+                    public void onDismiss(int[] reverseSortedPositions) {
+                        for (int position : reverseSortedPositions) {
+                            adapter.mDataset.remove(position);
+                            adapter.notifyItemRemoved(position);
+                        }
 
-                        Toast.makeText(getBaseContext(), String.format("Delete item %d",id),Toast.LENGTH_LONG).show();
+                        Toast.makeText(getBaseContext(), String.format("Delete %d items", reverseSortedPositions.length),Toast.LENGTH_LONG).show();
                     }
                 })
                 .setIsVertical(false)
@@ -81,30 +82,31 @@ public class MainActivity extends ActionBarActivity {
                         })
                 .create();
 
-        recyclerView.setOnTouchListener(listener);
+        recyclerView.addOnItemTouchListener(listener);
 
 
         // set touch listener for recyclerHorizontalView(horizontal swipe to remove)
 
         SwipeDismissRecyclerViewTouchListener verticalListener = new SwipeDismissRecyclerViewTouchListener.Builder(
                 anotherRecyclerView,
-                new SwipeDismissRecyclerViewTouchListener.DismissCallbacks() {
+                new SwipeDismissRecyclerViewTouchListener.BatchDismissCallbacks() {
                     @Override
                     public boolean canDismiss(int position) {
                         return true;
                     }
 
                     @Override
-                    public void onDismiss(View view) {
-                        int id = recyclerView.getChildPosition(view);
-                        adapter.mDataset.remove(id);
-                        adapter.notifyDataSetChanged();
+                    public void onDismiss(int[] reverseSortedPositions) {
+                        for (int position : reverseSortedPositions) {
+                            adapter.mDataset.remove(position);
+                            adapter.notifyItemRemoved(position);
+                        }
 
-                        Toast.makeText(getBaseContext(), String.format("Delete item %d",id),Toast.LENGTH_LONG).show();
+                        Toast.makeText(getBaseContext(), String.format("Delete %d items", reverseSortedPositions.length),Toast.LENGTH_LONG).show();
                     }
                 }).setIsVertical(true).create();
 
-        anotherRecyclerView.setOnTouchListener(verticalListener);
+        anotherRecyclerView.addOnItemTouchListener(verticalListener);
 
 
     }
@@ -0,0 +1,210 @@
+package io.github.codefalling.recyclerviewswipedismiss.benchmark;
+
+import com.google.monitoring.runtime.instrumentation.AllocationRecorder;
+import com.google.monitoring.runtime.instrumentation.Sampler;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Counts the allocations made by the library on the thread which created it, while counting is
+ * on. The java-allocation-instrumenter agent reports the allocations, see build.gradle.
+ * <p>
+ * Robolectric doesn't run the framework like a device: its shadows box the arguments of the
+ * methods they replace and keep their own state. So an allocation is only counted when the
+ * library makes it, or when a framework method the library calls makes it itself. What the
+ * framework allocates further down, and what Robolectric allocates, is left out.
+ */
+class AllocationCounter implements Sampler {
+    private static final String LIBRARY_PACKAGE = "io.github.codefalling.recyclerviewswipedismiss.";
+    private static final String[] JDK_PACKAGES = {"java.", "javax.", "sun.", "jdk.", "com.sun."};
+    private static final Set<String> BOXES = new HashSet<String>(Arrays.asList("java/lang/Boolean",
+            "java/lang/Byte", "java/lang/Character", "java/lang/Short", "java/lang/Integer",
+            "java/lang/Long", "java/lang/Float", "java/lang/Double"));
+    private static final int MAX_REPORTED = 5;
+    private static final int MAX_REPORTED_FRAMES = 12;
+
+    private final Thread mThread = Thread.currentThread();
+    private final StringBuilder mReport = new StringBuilder();
+    // Registered with the agent's own recorder, which the JDK classes report to
+    private Object mAgentSampler;
+    private Class<?> mAgentRecorder;
+    private boolean mCounting;
+    private boolean mSampling;
+    private int mSeen;
+    private int mCount;
+
+    AllocationCounter() {
+        AllocationRecorder.addSampler(this);
+        // Robolectric loads its own copy of the recorder for the classes of the test and the
+        // library, the JDK classes still report to the one the agent was started with
+        try {
+            Class<?> recorder = ClassLoader.getSystemClassLoader().loadClass(
+                    AllocationRecorder.class.getName());
+            if (recorder != AllocationRecorder.class) {
+                Class<?> sampler = Class.forName(Sampler.class.getName(), false, recorder.getClassLoader());
+                mAgentSampler = Proxy.newProxyInstance(sampler.getClassLoader(),
+                        new Class<?>[]{sampler}, new ForwardingHandler());
+                recorder.getMethod("addSampler", sampler).invoke(null, mAgentSampler);
+                mAgentRecorder = recorder;
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    void release() {
+        AllocationRecorder.removeSampler(this);
+        if (mAgentRecorder != null) {
+            try {
+                mAgentRecorder.getMethod("removeSampler", mAgentSampler.getClass().getInterfaces()[0])
+                        .invoke(null, mAgentSampler);
+            } catch (ReflectiveOperationException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    /**
+     * Whether the agent reports allocations, it isn't there when the test runs outside Gradle.
+     */
+    boolean isRecording() {
+        int seen = mSeen;
+        mCounting = true;
+        Object probe = new Object();
+        mCounting = false;
+        return probe != null && mSeen > seen;
+    }
+
+    void setCounting(boolean counting) {
+        mCounting = counting;
+    }
+
+    int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return the first allocations counted, with the frames down to the library
+     */
+    String getReport() {
+        return mReport.toString();
+    }
+
+    @Override
+    public void sampleAllocation(int count, String desc, Object newObj, long size) {
+        if (!mCounting || mSampling || Thread.currentThread() != mThread) {
+            return;
+        }
+        mSampling = true;
+        try {
+            mSeen++;
+            StackTraceElement[] stack = new Throwable().getStackTrace();
+            if (isMadeByLibrary(count, desc, stack)) {
+                mCount++;
+                if (mCount <= MAX_REPORTED) {
+                    report(count, desc, stack);
+                }
+            }
+        } finally {
+            mSampling = false;
+        }
+    }
+
+    private static boolean isMadeByLibrary(int count, String desc, StackTraceElement[] stack) {
+        int site = 0;
+        while (site < stack.length && isRecorderFrame(stack[site])) {
+            site++;
+        }
+        int caller = skipJdkFrames(stack, site);
+        if (caller == stack.length) {
+            return false;
+        }
+        String callerClass = stack[caller].getClassName();
+        if (isLibraryClass(callerClass)) {
+            return true;
+        }
+        if (!callerClass.startsWith("android.")) {
+            // Robolectric, or the test itself
+            return false;
+        }
+        if (BOXES.contains(desc) || count >= 0 && caller == site && desc.equals("java/lang/Object")) {
+            // Robolectric passing the arguments of a framework method to its shadow
+            return false;
+        }
+        // The framework method may be split in several frames of its class by Robolectric
+        int libraryCaller = caller + 1;
+        while (libraryCaller < stack.length
+                && stack[libraryCaller].getClassName().equals(callerClass)) {
+            libraryCaller++;
+        }
+        libraryCaller = skipJdkFrames(stack, libraryCaller);
+        return libraryCaller < stack.length && isLibraryClass(stack[libraryCaller].getClassName());
+    }
+
+    private static int skipJdkFrames(StackTraceElement[] stack, int from) {
+        int index = from;
+        while (index < stack.length && isJdkClass(stack[index].getClassName())) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isRecorderFrame(StackTraceElement frame) {
+        String name = frame.getClassName();
+        return name.startsWith("com.google.monitoring.") || name.startsWith(AllocationCounter.class.getName())
+                || name.startsWith("com.sun.proxy.") || name.startsWith("java.lang.reflect.")
+                || name.startsWith("sun.reflect.") || name.startsWith("java.lang.Throwable");
+    }
+
+    private static boolean isJdkClass(String name) {
+        for (String prefix : JDK_PACKAGES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLibraryClass(String name) {
+        return name.startsWith(LIBRARY_PACKAGE)
+                && !name.startsWith(AllocationCounter.class.getPackage().getName() + ".");
+    }
+
+    private void report(int count, String desc, StackTraceElement[] stack) {
+        mReport.append('\n').append(desc).append(count >= 0 ? "[" + count + "]" : "");
+        int frames = 0;
+        for (StackTraceElement frame : stack) {
+            if (isRecorderFrame(frame)) {
+                continue;
+            }
+            mReport.append("\n    at ").append(frame);
+            if (isLibraryClass(frame.getClassName()) || ++frames == MAX_REPORTED_FRAMES) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Implements the agent's copy of {@link Sampler}.
+     */
+    private class ForwardingHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("sampleAllocation")) {
+                sampleAllocation((Integer) args[0], (String) args[1], args[2], (Long) args[3]);
+                return null;
+            } else if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            return AllocationCounter.this.toString();
+        }
+    }
+}
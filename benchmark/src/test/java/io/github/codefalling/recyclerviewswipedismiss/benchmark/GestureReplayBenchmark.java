@@ -0,0 +1,118 @@
+package io.github.codefalling.recyclerviewswipedismiss.benchmark;
+
+import android.view.MotionEvent;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Times the listener's handling of every ACTION_MOVE and ACTION_UP of the scripted gestures, for
+ * a horizontal and a vertical list, and prints the median and the 99th percentile per gesture with
+ * the median of the bytes allocated per event. A move includes the frames run since the previous
+ * event, an up or a cancel includes its whole end animation. It also checks each gesture still
+ * dismisses what it should.
+ * <p>
+ * Robolectric's shadows run along with the listener and are part of the numbers, compare them
+ * between versions of the library rather than with a device.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class GestureReplayBenchmark {
+    private static final int WARM_UP_RUNS = 500;
+    private static final int MEASURED_RUNS = 200;
+
+    @Test
+    public void horizontal() {
+        run(false);
+    }
+
+    @Test
+    public void vertical() {
+        run(true);
+    }
+
+    private static void run(boolean vertical) {
+        GestureReplayer replayer = new GestureReplayer(vertical);
+        com.sun.management.ThreadMXBean threads = allocationCounter();
+        long thread = Thread.currentThread().getId();
+
+        for (ScriptedGesture gesture : ScriptedGesture.all()) {
+            for (int i = 0; i < WARM_UP_RUNS; i++) {
+                assertEquals(gesture.name, gesture.dismissCount, replayer.replay(gesture));
+            }
+
+            Samples moves = new Samples(gesture.size * MEASURED_RUNS);
+            Samples ups = new Samples(MEASURED_RUNS);
+            for (int run = 0; run < MEASURED_RUNS; run++) {
+                MotionEvent[] events = replayer.obtainEvents(gesture);
+                for (int i = 0; i < gesture.size; i++) {
+                    int action = gesture.getActionMasked(i);
+                    long bytes = threads != null ? threads.getThreadAllocatedBytes(thread) : 0;
+                    long start = System.nanoTime();
+                    replayer.dispatch(events[i]);
+                    long nanos = System.nanoTime() - start;
+                    bytes = threads != null ? threads.getThreadAllocatedBytes(thread) - bytes : 0;
+                    if (action == MotionEvent.ACTION_MOVE) {
+                        moves.add(nanos, bytes);
+                    } else if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+                        ups.add(nanos, bytes);
+                    }
+                }
+                GestureReplayer.recycle(events);
+                assertEquals(gesture.name, gesture.dismissCount, replayer.takeDismissCount());
+            }
+
+            String list = vertical ? "vertical" : "horizontal";
+            System.out.printf("%s %s, ACTION_MOVE: %s%n", list, gesture.name, moves.summary(threads != null));
+            System.out.printf("%s %s, ACTION_UP: %s%n", list, gesture.name, ups.summary(threads != null));
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        try {
+            Object threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+                if (counter.isThreadAllocatedMemorySupported()) {
+                    counter.setThreadAllocatedMemoryEnabled(true);
+                    return counter;
+                }
+            }
+        } catch (NoClassDefFoundError e) {
+            // Not a HotSpot based JVM, only the times are reported
+        }
+        return null;
+    }
+
+    private static class Samples {
+        private final long[] mNanos;
+        private final long[] mBytes;
+        private int mCount;
+
+        Samples(int capacity) {
+            mNanos = new long[capacity];
+            mBytes = new long[capacity];
+        }
+
+        void add(long nanos, long bytes) {
+            mNanos[mCount] = nanos;
+            mBytes[mCount] = bytes;
+            mCount++;
+        }
+
+        String summary(boolean withBytes) {
+            Arrays.sort(mNanos, 0, mCount);
+            Arrays.sort(mBytes, 0, mCount);
+            return String.format("%d events, median %d ns, p99 %d ns, %s bytes per event",
+                    mCount / MEASURED_RUNS, mNanos[mCount / 2], mNanos[mCount * 99 / 100],
+                    withBytes ? String.valueOf(mBytes[mCount / 2]) : "n/a");
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package io.github.codefalling.recyclerviewswipedismiss.benchmark;
+
+import android.app.Activity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.robolectric.Robolectric;
+import org.robolectric.util.Scheduler;
+
+import io.github.codefalling.recyclerviewswipedismiss.SwipeDismissRecyclerViewTouchListener;
+
+/**
+ * Replays scripted gestures through {@link SwipeDismissRecyclerViewTouchListener#onTouch} on a
+ * list shown by an activity. The main looper is paused and its clock follows the events: the
+ * frames the listener waits for run when the clock is moved to the next event, the end animation
+ * runs to its end after an up or a cancel.
+ */
+class GestureReplayer {
+    static final int LIST_EXTENT = 1920;
+    static final int ITEM_EXTENT = 1080;
+    static final int ITEM_THICKNESS = 200;
+    // Covers the end animation and the commit of a dismiss
+    static final long SETTLE_MILLIS = 1000;
+    private static final int ITEM_COUNT = 50;
+    // The gestures start in the middle of the second item
+    private static final int ITEM_POSITION = 1;
+
+    final RecyclerView recyclerView;
+    final SwipeDismissRecyclerViewTouchListener listener;
+    private final boolean mVertical;
+    private final Scheduler mScheduler;
+    private int mDismissCount;
+
+    GestureReplayer(boolean vertical) {
+        mVertical = vertical;
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        recyclerView = new RecyclerView(activity);
+        // A vertical swipe dismisses the items of a horizontal list
+        recyclerView.setLayoutManager(new LinearLayoutManager(activity,
+                vertical ? LinearLayoutManager.HORIZONTAL : LinearLayoutManager.VERTICAL, false));
+        recyclerView.setAdapter(new ItemAdapter());
+        activity.setContentView(recyclerView, new ViewGroup.LayoutParams(
+                vertical ? LIST_EXTENT : ITEM_EXTENT, vertical ? ITEM_EXTENT : LIST_EXTENT));
+        recyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(vertical ? LIST_EXTENT : ITEM_EXTENT, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(vertical ? ITEM_EXTENT : LIST_EXTENT, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, recyclerView.getMeasuredWidth(), recyclerView.getMeasuredHeight());
+
+        listener = new SwipeDismissRecyclerViewTouchListener.Builder(recyclerView,
+                new SwipeDismissRecyclerViewTouchListener.BatchDismissCallbacks() {
+                    @Override
+                    public boolean canDismiss(int position) {
+                        return true;
+                    }
+
+                    @Override
+                    public void onDismiss(int[] reverseSortedPositions) {
+                        // The items are kept, every replay finds the same list
+                        mDismissCount += reverseSortedPositions.length;
+                    }
+                })
+                .setIsVertical(vertical)
+                .create();
+
+        mScheduler = Robolectric.getForegroundThreadScheduler();
+        mScheduler.pause();
+        mScheduler.advanceBy(SETTLE_MILLIS);
+    }
+
+    /**
+     * Obtains the events of the gesture, starting on the next frame. Recycle them once replayed.
+     */
+    MotionEvent[] obtainEvents(ScriptedGesture gesture) {
+        long downTime = mScheduler.getCurrentTime() + ScriptedGesture.FRAME_MILLIS;
+        float originMain = ITEM_EXTENT / 4;
+        float originCross = ITEM_POSITION * ITEM_THICKNESS + ITEM_THICKNESS / 2;
+        MotionEvent[] events = new MotionEvent[gesture.size];
+        for (int i = 0; i < gesture.size; i++) {
+            events[i] = gesture.obtainEvent(i, mVertical, mVertical ? originCross : originMain,
+                    mVertical ? originMain : originCross, downTime);
+        }
+        return events;
+    }
+
+    /**
+     * Runs the frames due by the time of the event and hands it to the listener. An up or a
+     * cancel also runs the end animation.
+     */
+    void dispatch(MotionEvent event) {
+        mScheduler.advanceTo(event.getEventTime());
+        listener.onTouch(recyclerView, event);
+        int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            mScheduler.advanceBy(SETTLE_MILLIS);
+        }
+    }
+
+    /**
+     * Replays the whole gesture.
+     *
+     * @return the number of items it dismissed
+     */
+    int replay(ScriptedGesture gesture) {
+        MotionEvent[] events = obtainEvents(gesture);
+        for (MotionEvent event : events) {
+            dispatch(event);
+        }
+        recycle(events);
+        return takeDismissCount();
+    }
+
+    int takeDismissCount() {
+        int count = mDismissCount;
+        mDismissCount = 0;
+        return count;
+    }
+
+    static void recycle(MotionEvent[] events) {
+        for (MotionEvent event : events) {
+            event.recycle();
+        }
+    }
+
+    private class ItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            View view = new View(parent.getContext());
+            view.setLayoutParams(new RecyclerView.LayoutParams(
+                    mVertical ? ITEM_THICKNESS : ViewGroup.LayoutParams.MATCH_PARENT,
+                    mVertical ? ViewGroup.LayoutParams.MATCH_PARENT : ITEM_THICKNESS));
+            return new RecyclerView.ViewHolder(view) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        }
+
+        @Override
+        public int getItemCount() {
+            return ITEM_COUNT;
+        }
+    }
+}
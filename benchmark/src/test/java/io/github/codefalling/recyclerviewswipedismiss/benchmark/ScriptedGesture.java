@@ -0,0 +1,252 @@
+package io.github.codefalling.recyclerviewswipedismiss.benchmark;
+
+import android.view.MotionEvent;
+
+import org.robolectric.Shadows;
+import org.robolectric.shadows.ShadowMotionEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A scripted touch stream. Its samples come at 120Hz with a deterministic jitter on their times
+ * and positions, like a touch screen's, and are the same on every run. Positions are along the
+ * swipe axis and across it, {@link #obtainEvent} maps them to x and y for a horizontal or a
+ * vertical list.
+ */
+class ScriptedGesture {
+    static final long FRAME_MILLIS = 8;
+    // Robolectric's MotionEvent holds two pointers at most
+    private static final int MAX_POINTERS = 2;
+    private static final int NO_POINTER = -1;
+
+    final String name;
+    // How many items the listener dismisses when the gesture is replayed
+    final int dismissCount;
+    final int size;
+    private final Event[] mEvents;
+
+    private ScriptedGesture(String name, int dismissCount, Script script) {
+        this.name = name;
+        this.dismissCount = dismissCount;
+        mEvents = script.mEvents.toArray(new Event[script.mEvents.size()]);
+        size = mEvents.length;
+    }
+
+    /**
+     * A drag a third of the item across, held still before the release: settles back.
+     */
+    static ScriptedGesture slowDrag() {
+        Script script = new Script(1);
+        script.down(0, 0);
+        script.drag(360, 4, 900);
+        script.hold(120);
+        script.up();
+        return new ScriptedGesture("slow drag", 0, script);
+    }
+
+    /**
+     * A short fast drag released while still moving: dismisses towards the positive end.
+     */
+    static ScriptedGesture fling() {
+        Script script = new Script(2);
+        script.down(0, 0);
+        script.drag(260, 6, 80);
+        script.up();
+        return new ScriptedGesture("fling", 1, script);
+    }
+
+    /**
+     * A drag taken over by the parent halfway: the item settles back.
+     */
+    static ScriptedGesture cancel() {
+        Script script = new Script(3);
+        script.down(0, 0);
+        script.drag(180, 2, 300);
+        script.cancel();
+        return new ScriptedGesture("cancel", 0, script);
+    }
+
+    /**
+     * A drag joined by a second finger, which carries on once the first one lifts and ends in a
+     * fling towards the negative end.
+     */
+    static ScriptedGesture pointerHandoff() {
+        Script script = new Script(4);
+        script.down(0, 0);
+        script.drag(-160, 3, 200);
+        script.pointerDown(140, 60);
+        script.drag(-40, 0, 50);
+        script.pointerUp(0);
+        script.drag(-240, -5, 90);
+        script.up();
+        return new ScriptedGesture("pointer handoff", 1, script);
+    }
+
+    /**
+     * A drag mostly across the swipe axis: the list scrolls, the item is let go.
+     */
+    static ScriptedGesture scroll() {
+        Script script = new Script(5);
+        script.down(0, 0);
+        script.drag(12, 300, 200);
+        script.up();
+        return new ScriptedGesture("scroll", 0, script);
+    }
+
+    static ScriptedGesture[] all() {
+        return new ScriptedGesture[]{slowDrag(), fling(), cancel(), pointerHandoff(), scroll()};
+    }
+
+    int getActionMasked(int index) {
+        return mEvents[index].action;
+    }
+
+    /**
+     * Obtains the event at the given index, to be recycled by the caller.
+     *
+     * @param originX  where the gesture starts in the list
+     * @param downTime the time of the first event, the others follow at their scripted times
+     */
+    MotionEvent obtainEvent(int index, boolean vertical, float originX, float originY, long downTime) {
+        Event event = mEvents[index];
+        int action = event.action | event.actionIndex << MotionEvent.ACTION_POINTER_INDEX_SHIFT;
+        MotionEvent motionEvent = MotionEvent.obtain(downTime, downTime + event.time, action,
+                originX + (vertical ? event.cross[0] : event.main[0]),
+                originY + (vertical ? event.main[0] : event.cross[0]), 0);
+        ShadowMotionEvent shadow = Shadows.shadowOf(motionEvent);
+        if (event.pointerCount > 1) {
+            shadow.setPointer2(originX + (vertical ? event.cross[1] : event.main[1]),
+                    originY + (vertical ? event.main[1] : event.cross[1]));
+        }
+        shadow.setPointerIds(event.ids[0], event.ids[1]);
+        shadow.setPointerIndex(event.actionIndex);
+        return motionEvent;
+    }
+
+    private static class Event {
+        int action;
+        int actionIndex;
+        long time;
+        int pointerCount;
+        final int[] ids = new int[MAX_POINTERS];
+        final float[] main = new float[MAX_POINTERS];
+        final float[] cross = new float[MAX_POINTERS];
+    }
+
+    /**
+     * Writes the events of a gesture, moving every pointer down by the same distances.
+     */
+    private static class Script {
+        private final List<Event> mEvents = new ArrayList<Event>();
+        private final int[] mIds = {NO_POINTER, NO_POINTER};
+        private final float[] mMain = new float[MAX_POINTERS];
+        private final float[] mCross = new float[MAX_POINTERS];
+        private int mPointerCount;
+        private int mNextId;
+        private long mLastTime;
+        private long mSeed;
+
+        Script(long seed) {
+            mSeed = seed;
+        }
+
+        void down(float main, float cross) {
+            addPointer(main, cross);
+            add(MotionEvent.ACTION_DOWN, 0, 0);
+        }
+
+        /**
+         * Moves linearly by the given distances over the given duration.
+         */
+        void drag(float main, float cross, long durationMillis) {
+            float[] fromMain = mMain.clone();
+            float[] fromCross = mCross.clone();
+            long from = mLastTime;
+            int steps = (int) Math.max(1, durationMillis / FRAME_MILLIS);
+            for (int i = 1; i <= steps; i++) {
+                float fraction = (float) i / steps;
+                float jitterMain = noise(0.5f);
+                float jitterCross = noise(0.5f);
+                for (int pointer = 0; pointer < mPointerCount; pointer++) {
+                    mMain[pointer] = fromMain[pointer] + main * fraction + jitterMain;
+                    mCross[pointer] = fromCross[pointer] + cross * fraction + jitterCross;
+                }
+                add(MotionEvent.ACTION_MOVE, 0, i * FRAME_MILLIS + (long) noise(1.5f) - (mLastTime - from));
+            }
+        }
+
+        void hold(long durationMillis) {
+            float[] atMain = mMain.clone();
+            float[] atCross = mCross.clone();
+            for (long time = FRAME_MILLIS; time <= durationMillis; time += FRAME_MILLIS) {
+                float jitterMain = noise(0.5f);
+                float jitterCross = noise(0.5f);
+                for (int pointer = 0; pointer < mPointerCount; pointer++) {
+                    mMain[pointer] = atMain[pointer] + jitterMain;
+                    mCross[pointer] = atCross[pointer] + jitterCross;
+                }
+                add(MotionEvent.ACTION_MOVE, 0, FRAME_MILLIS);
+            }
+        }
+
+        /**
+         * Puts a second finger down, away from the first one by the given distances.
+         */
+        void pointerDown(float mainShift, float crossShift) {
+            addPointer(mMain[0] + mainShift, mCross[0] + crossShift);
+            add(MotionEvent.ACTION_POINTER_DOWN, mPointerCount - 1, FRAME_MILLIS);
+        }
+
+        void pointerUp(int pointerIndex) {
+            add(MotionEvent.ACTION_POINTER_UP, pointerIndex, FRAME_MILLIS);
+            for (int i = pointerIndex; i < mPointerCount - 1; i++) {
+                mIds[i] = mIds[i + 1];
+                mMain[i] = mMain[i + 1];
+                mCross[i] = mCross[i + 1];
+            }
+            mPointerCount--;
+            mIds[mPointerCount] = NO_POINTER;
+        }
+
+        void up() {
+            add(MotionEvent.ACTION_UP, 0, FRAME_MILLIS / 2);
+        }
+
+        void cancel() {
+            add(MotionEvent.ACTION_CANCEL, 0, FRAME_MILLIS / 2);
+        }
+
+        private void addPointer(float main, float cross) {
+            mIds[mPointerCount] = mNextId++;
+            mMain[mPointerCount] = main;
+            mCross[mPointerCount] = cross;
+            mPointerCount++;
+        }
+
+        /**
+         * @param delay time since the previous event, events never go back in time
+         */
+        private void add(int action, int actionIndex, long delay) {
+            Event event = new Event();
+            event.action = action;
+            event.actionIndex = actionIndex;
+            event.time = mLastTime + Math.max(0, delay);
+            event.pointerCount = mPointerCount;
+            System.arraycopy(mIds, 0, event.ids, 0, MAX_POINTERS);
+            System.arraycopy(mMain, 0, event.main, 0, MAX_POINTERS);
+            System.arraycopy(mCross, 0, event.cross, 0, MAX_POINTERS);
+            mEvents.add(event);
+            mLastTime = event.time;
+        }
+
+        /**
+         * @return a pseudo random value in [-amplitude, amplitude], the same for every run
+         */
+        private float noise(float amplitude) {
+            mSeed = (mSeed * 6364136223846793005L + 1442695040888963407L);
+            float unit = (mSeed >>> 40) / (float) (1L << 24);
+            return (unit * 2 - 1) * amplitude;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package io.github.codefalling.recyclerviewswipedismiss.benchmark;
+
+import android.view.MotionEvent;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Replays the scripted gestures through the listener's onTouch and checks that, once warmed up,
+ * the library allocates nothing while handling the down, move and pointer events and running the
+ * drag frames in between. The up and cancel events start the end animations, which the framework
+ * allocates for, and aren't counted.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class TouchPathAllocationTest {
+    private static final int WARM_UP_RUNS = 50;
+    private static final int MEASURED_RUNS = 20;
+
+    @Test
+    public void horizontalGesturesDontAllocate() {
+        assertNoAllocation(false);
+    }
+
+    @Test
+    public void verticalGesturesDontAllocate() {
+        assertNoAllocation(true);
+    }
+
+    private static void assertNoAllocation(boolean vertical) {
+        GestureReplayer replayer = new GestureReplayer(vertical);
+        ScriptedGesture[] gestures = ScriptedGesture.all();
+        for (int run = 0; run < WARM_UP_RUNS; run++) {
+            for (ScriptedGesture gesture : gestures) {
+                replayer.replay(gesture);
+            }
+        }
+
+        AllocationCounter counter = new AllocationCounter();
+        try {
+            assumeTrue("the allocation instrumenter agent isn't loaded", counter.isRecording());
+            for (int run = 0; run < MEASURED_RUNS; run++) {
+                for (ScriptedGesture gesture : gestures) {
+                    MotionEvent[] events = replayer.obtainEvents(gesture);
+                    for (int i = 0; i < gesture.size; i++) {
+                        int action = gesture.getActionMasked(i);
+                        counter.setCounting(action != MotionEvent.ACTION_UP
+                                && action != MotionEvent.ACTION_CANCEL);
+                        replayer.dispatch(events[i]);
+                        counter.setCounting(false);
+                    }
+                    GestureReplayer.recycle(events);
+                    replayer.takeDismissCount();
+                }
+            }
+        } finally {
+            counter.release();
+        }
+        assertEquals("allocations by the library" + counter.getReport(), 0, counter.getCount());
+    }
+}
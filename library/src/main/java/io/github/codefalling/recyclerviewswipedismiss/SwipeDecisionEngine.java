@@ -0,0 +1,433 @@
+package io.github.codefalling.recyclerviewswipedismiss;
+
+/**
+ * The gesture math of a swipe: when a drag becomes a swipe, and whether a released swipe
+ * dismisses the item. It only takes primitive positions and timestamps and estimates the velocity
+ * itself, so it doesn't depend on any Android class and doesn't allocate once created.
+ */
+public class SwipeDecisionEngine {
+    /**
+     * Results of {@link #decide}: settle back, or dismiss towards the positive or negative end of
+     * the swipe axis.
+     */
+    public static final int DECISION_SETTLE = 0;
+    public static final int DECISION_DISMISS_POSITIVE = 1;
+    public static final int DECISION_DISMISS_NEGATIVE = -1;
+
+    /**
+     * Results of {@link #lockAxis}: not decided yet, the drag is a swipe, or it follows the other
+     * axis and belongs to the list or a scrolling parent.
+     */
+    public static final int AXIS_UNDECIDED = 0;
+    public static final int AXIS_SWIPE = 1;
+    public static final int AXIS_SCROLL = 2;
+
+    // Samples older than this, relative to the newest one, don't count for the velocity
+    private static final long VELOCITY_HORIZON_MILLIS = 100;
+    // A gap this long between two samples means the pointer stopped in between
+    private static final long POINTER_STOPPED_MILLIS = 40;
+    private static final int SAMPLE_CAPACITY = 32;
+    // Fewer samples than this in the velocity fit are too noisy to extrapolate
+    private static final int MIN_PREDICTION_SAMPLES = 3;
+
+    private final boolean mVertical;
+    private final float mSlop;
+    private final float mDismissFractionNegative;
+    private final float mDismissFractionPositive;
+    private final float mMinFlingVelocity;
+    private final float mMaxFlingVelocity;
+    private final float mAxisLockRatio;
+    private final int mEarlyLockSamples;
+    private final float mEarlyLockSlopFraction;
+    private final float mEarlyLockVelocity;
+
+    // Ring buffer of the samples of the current gesture
+    private final float[] mSampleX = new float[SAMPLE_CAPACITY];
+    private final float[] mSampleY = new float[SAMPLE_CAPACITY];
+    private final long[] mSampleTime = new long[SAMPLE_CAPACITY];
+    private int mSampleHead = -1;
+    private int mSampleCount;
+
+    private float mVelocityX;
+    private float mVelocityY;
+    private int mVelocitySampleCount;
+
+    // Last prediction, along the swipe axis, waiting for the samples to catch up with it
+    private boolean mPredictionPending;
+    private float mPredictedPosition;
+    private long mPredictedTime;
+    private float mPredictionError = Float.NaN;
+
+    /**
+     * @param vertical   whether items are swiped along the y axis
+     * @param thresholds the thresholds, all of them must be resolved to pixels
+     */
+    public SwipeDecisionEngine(boolean vertical, Thresholds thresholds) {
+        mVertical = vertical;
+        mSlop = thresholds.mSlop;
+        mDismissFractionNegative = thresholds.mDismissFractionNegative;
+        mDismissFractionPositive = thresholds.mDismissFractionPositive;
+        mMinFlingVelocity = thresholds.mMinFlingVelocity;
+        mMaxFlingVelocity = thresholds.mMaxFlingVelocity;
+        mAxisLockRatio = thresholds.mAxisLockRatio;
+        mEarlyLockSamples = thresholds.mEarlyLockSamples;
+        mEarlyLockSlopFraction = thresholds.mEarlyLockSlopFraction;
+        mEarlyLockVelocity = thresholds.mEarlyLockVelocity;
+    }
+
+    /**
+     * Forgets the previous gesture and starts a new one at the given sample.
+     */
+    public void reset(float x, float y, long timeMillis) {
+        mSampleHead = -1;
+        mSampleCount = 0;
+        mVelocityX = 0;
+        mVelocityY = 0;
+        mPredictionPending = false;
+        mPredictionError = Float.NaN;
+        addSample(x, y, timeMillis);
+    }
+
+    public void addSample(float x, float y, long timeMillis) {
+        if (mPredictionPending && mSampleCount > 0 && timeMillis >= mPredictedTime) {
+            // Where the pointer really was when predicted, between the last sample and this one
+            float position = mVertical ? y : x;
+            long lastTime = mSampleTime[mSampleHead];
+            if (timeMillis > lastTime) {
+                float lastPosition = mVertical ? mSampleY[mSampleHead] : mSampleX[mSampleHead];
+                position = lastPosition + (position - lastPosition)
+                        * (mPredictedTime - lastTime) / (timeMillis - lastTime);
+            }
+            mPredictionError = mPredictedPosition - position;
+            mPredictionPending = false;
+        }
+
+        mSampleHead = (mSampleHead + 1) % SAMPLE_CAPACITY;
+        mSampleX[mSampleHead] = x;
+        mSampleY[mSampleHead] = y;
+        mSampleTime[mSampleHead] = timeMillis;
+        if (mSampleCount < SAMPLE_CAPACITY) {
+            mSampleCount++;
+        }
+    }
+
+    public float getSlop() {
+        return mSlop;
+    }
+
+    /**
+     * Whether a drag by the given deltas from the down position is a swipe: it went past the slop
+     * along the swipe axis and mostly stayed on it.
+     */
+    public boolean isSwipeStart(float deltaX, float deltaY) {
+        float main = Math.abs(mVertical ? deltaY : deltaX);
+        float cross = Math.abs(mVertical ? deltaX : deltaY);
+        return main > mSlop && cross * mAxisLockRatio < main;
+    }
+
+    /**
+     * Decides which axis a drag by the given deltas from the down position follows. Past the slop
+     * the displacement decides, as in {@link #isSwipeStart}. Before that, once the drag went a
+     * fraction of the slop over enough samples, a velocity clearly along one axis decides early,
+     * so that the list or a scrolling parent gets its answer without waiting for the slop.
+     *
+     * @return one of {@link #AXIS_UNDECIDED}, {@link #AXIS_SWIPE} and {@link #AXIS_SCROLL}
+     */
+    public int lockAxis(float deltaX, float deltaY) {
+        float main = Math.abs(mVertical ? deltaY : deltaX);
+        float cross = Math.abs(mVertical ? deltaX : deltaY);
+        if (isSwipeStart(deltaX, deltaY)) {
+            return AXIS_SWIPE;
+        }
+        if (cross > mSlop && main * mAxisLockRatio < cross) {
+            return AXIS_SCROLL;
+        }
+
+        if (mEarlyLockSamples <= 0 || mSampleCount < mEarlyLockSamples
+                || Math.max(main, cross) < mSlop * mEarlyLockSlopFraction) {
+            return AXIS_UNDECIDED;
+        }
+        computeVelocity();
+        float velocity = mVertical ? mVelocityY : mVelocityX;
+        float absVelocity = Math.abs(velocity);
+        float absCrossVelocity = Math.abs(mVertical ? mVelocityX : mVelocityY);
+        float delta = mVertical ? deltaY : deltaX;
+        if (absVelocity >= mEarlyLockVelocity && absCrossVelocity * mAxisLockRatio < absVelocity
+                && cross * mAxisLockRatio < main
+                // the pointer keeps going the way it went so far
+                && (velocity < 0) == (delta < 0)) {
+            return AXIS_SWIPE;
+        }
+        if (absCrossVelocity >= mEarlyLockVelocity && absVelocity * mAxisLockRatio < absCrossVelocity
+                && main * mAxisLockRatio < cross) {
+            return AXIS_SCROLL;
+        }
+        return AXIS_UNDECIDED;
+    }
+
+    /**
+     * Whether a drag by the given deltas leaves the swipe axis enough for the item to lose its
+     * pressed state.
+     */
+    public boolean isOffAxis(float deltaX, float deltaY) {
+        float main = Math.abs(mVertical ? deltaY : deltaX);
+        float cross = Math.abs(mVertical ? deltaX : deltaY);
+        return cross * mAxisLockRatio >= main;
+    }
+
+    /**
+     * Estimates the velocity from the recorded samples, in pixels per second. The estimate is
+     * then available from {@link #getVelocityX()} and {@link #getVelocityY()}.
+     */
+    public void computeVelocity() {
+        mVelocityX = 0;
+        mVelocityY = 0;
+        mVelocitySampleCount = 0;
+        if (mSampleCount < 2) {
+            return;
+        }
+
+        // Walk back from the newest sample as long as the samples are recent and continuous
+        long newest = mSampleTime[mSampleHead];
+        int count = 1;
+        long previous = newest;
+        float sumT = 0;
+        float sumX = mSampleX[mSampleHead];
+        float sumY = mSampleY[mSampleHead];
+        for (int i = 1; i < mSampleCount; i++) {
+            int index = (mSampleHead - i + SAMPLE_CAPACITY) % SAMPLE_CAPACITY;
+            long time = mSampleTime[index];
+            if (newest - time > VELOCITY_HORIZON_MILLIS || previous - time > POINTER_STOPPED_MILLIS) {
+                break;
+            }
+            previous = time;
+            sumT += time - newest;
+            sumX += mSampleX[index];
+            sumY += mSampleY[index];
+            count++;
+        }
+        if (count < 2) {
+            return;
+        }
+
+        // Least squares slope of position over time
+        float meanT = sumT / count;
+        float meanX = sumX / count;
+        float meanY = sumY / count;
+        float varianceT = 0;
+        float covarianceX = 0;
+        float covarianceY = 0;
+        for (int i = 0; i < count; i++) {
+            int index = (mSampleHead - i + SAMPLE_CAPACITY) % SAMPLE_CAPACITY;
+            float t = mSampleTime[index] - newest - meanT;
+            varianceT += t * t;
+            covarianceX += t * (mSampleX[index] - meanX);
+            covarianceY += t * (mSampleY[index] - meanY);
+        }
+        if (varianceT == 0) {
+            return;
+        }
+        mVelocityX = covarianceX / varianceT * 1000;
+        mVelocityY = covarianceY / varianceT * 1000;
+        mVelocitySampleCount = count;
+    }
+
+    /**
+     * Extrapolates how far the pointer will have moved along the swipe axis from the last sample
+     * by the given time. Returns 0 when the samples don't allow a confident prediction: too few
+     * of them, the pointer stopped or it just turned back.
+     *
+     * @param targetTimeMillis time to predict the position for, on the clock of the samples
+     * @param maxOffset        the prediction is clamped to this distance
+     */
+    public float predictOffset(long targetTimeMillis, float maxOffset) {
+        computeVelocity();
+        long lastTime = mSampleTime[mSampleHead];
+        long ahead = targetTimeMillis - lastTime;
+        if (mVelocitySampleCount < MIN_PREDICTION_SAMPLES || ahead <= 0 || ahead > POINTER_STOPPED_MILLIS) {
+            return 0;
+        }
+
+        float velocity = mVertical ? mVelocityY : mVelocityX;
+        int previous = (mSampleHead - 1 + SAMPLE_CAPACITY) % SAMPLE_CAPACITY;
+        float lastStep = mVertical ? mSampleY[mSampleHead] - mSampleY[previous]
+                : mSampleX[mSampleHead] - mSampleX[previous];
+        if (lastStep != 0 && (lastStep < 0) != (velocity < 0)) {
+            return 0;
+        }
+
+        float offset = Math.max(-maxOffset, Math.min(maxOffset, velocity * ahead / 1000));
+        mPredictedPosition = (mVertical ? mSampleY[mSampleHead] : mSampleX[mSampleHead]) + offset;
+        mPredictedTime = targetTimeMillis;
+        mPredictionPending = true;
+        return offset;
+    }
+
+    /**
+     * Returns how far off along the swipe axis the last prediction which the samples have caught
+     * up with was, positive when it went too far, and forgets it. Returns NaN if there is none.
+     */
+    public float takePredictionError() {
+        float error = mPredictionError;
+        mPredictionError = Float.NaN;
+        return error;
+    }
+
+    public float getVelocityX() {
+        return mVelocityX;
+    }
+
+    public float getVelocityY() {
+        return mVelocityY;
+    }
+
+    /**
+     * Whether a swipe released at the given distance along the swipe axis dismisses its item,
+     * whatever its velocity.
+     */
+    public boolean isPastDismissThreshold(float delta, float extent) {
+        return Math.abs(delta) > extent * (delta > 0 ? mDismissFractionPositive : mDismissFractionNegative);
+    }
+
+    /**
+     * Decides whether a released swipe dismisses its item, using the velocity computed by the last
+     * call to {@link #computeVelocity()}.
+     *
+     * @param deltaX distance the item has been dragged along x
+     * @param deltaY distance the item has been dragged along y
+     * @param extent size of the item along the swipe axis
+     * @return one of {@link #DECISION_SETTLE}, {@link #DECISION_DISMISS_POSITIVE} and
+     * {@link #DECISION_DISMISS_NEGATIVE}
+     */
+    public int decide(float deltaX, float deltaY, float extent) {
+        float delta = mVertical ? deltaY : deltaX;
+        if (isPastDismissThreshold(delta, extent)) {
+            return delta > 0 ? DECISION_DISMISS_POSITIVE : DECISION_DISMISS_NEGATIVE;
+        }
+
+        float velocity = mVertical ? mVelocityY : mVelocityX;
+        float absVelocity = Math.abs(velocity);
+        float absCrossVelocity = Math.abs(mVertical ? mVelocityX : mVelocityY);
+        if (mMinFlingVelocity <= absVelocity && absVelocity <= mMaxFlingVelocity
+                && absCrossVelocity < absVelocity
+                // dismiss only if flinging in the same direction as dragging
+                && (velocity < 0) == (delta < 0)) {
+            return velocity > 0 ? DECISION_DISMISS_POSITIVE : DECISION_DISMISS_NEGATIVE;
+        }
+        return DECISION_SETTLE;
+    }
+
+    /**
+     * Thresholds of the swipe decision, the ones left unset take the system defaults.
+     */
+    public static class Thresholds {
+        private float mSlop = -1;
+        private float mDismissFractionNegative = 0.5f;
+        private float mDismissFractionPositive = 0.5f;
+        private float mMinFlingVelocity = -1;
+        private float mMaxFlingVelocity = -1;
+        private float mAxisLockRatio = 2;
+        private int mEarlyLockSamples = 3;
+        private float mEarlyLockSlopFraction = 0.5f;
+        private float mEarlyLockVelocity = -1;
+
+        public Thresholds() {
+        }
+
+        public Thresholds(Thresholds other) {
+            mSlop = other.mSlop;
+            mDismissFractionNegative = other.mDismissFractionNegative;
+            mDismissFractionPositive = other.mDismissFractionPositive;
+            mMinFlingVelocity = other.mMinFlingVelocity;
+            mMaxFlingVelocity = other.mMaxFlingVelocity;
+            mAxisLockRatio = other.mAxisLockRatio;
+            mEarlyLockSamples = other.mEarlyLockSamples;
+            mEarlyLockSlopFraction = other.mEarlyLockSlopFraction;
+            mEarlyLockVelocity = other.mEarlyLockVelocity;
+        }
+
+        /**
+         * @param slop distance in pixels a drag goes along the swipe axis before it is a swipe
+         */
+        public Thresholds setSlop(float slop) {
+            mSlop = slop;
+            return this;
+        }
+
+        /**
+         * @param fraction fraction of the item's size a released swipe must have gone to dismiss it
+         *                 without a fling, 0.5 by default
+         */
+        public Thresholds setDismissFraction(float fraction) {
+            return setDismissFractions(fraction, fraction);
+        }
+
+        /**
+         * Same as {@link #setDismissFraction} with a different fraction for each direction.
+         *
+         * @param negative fraction for swipes towards the left, or the top when vertical
+         * @param positive fraction for swipes towards the right, or the bottom when vertical
+         */
+        public Thresholds setDismissFractions(float negative, float positive) {
+            mDismissFractionNegative = negative;
+            mDismissFractionPositive = positive;
+            return this;
+        }
+
+        /**
+         * @param min velocity in pixels per second a fling needs to dismiss
+         * @param max velocity in pixels per second above which a fling is ignored
+         */
+        public Thresholds setFlingVelocity(float min, float max) {
+            mMinFlingVelocity = min;
+            mMaxFlingVelocity = max;
+            return this;
+        }
+
+        /**
+         * @param ratio how many times longer than across the swipe axis a drag must go along it to
+         *              be a swipe, 2 by default
+         */
+        public Thresholds setAxisLockRatio(float ratio) {
+            mAxisLockRatio = ratio;
+            return this;
+        }
+
+        /**
+         * Lets the axis of a drag be decided from its velocity before it goes past the slop, see
+         * {@link SwipeDecisionEngine#lockAxis}.
+         *
+         * @param samples      touch samples needed before deciding early, 3 by default, 0 only
+         *                     decides past the slop
+         * @param slopFraction fraction of the slop the drag must have gone, 0.5 by default
+         * @param velocity     velocity in pixels per second the drag must have along the axis it
+         *                     locks to, the system minimum fling velocity by default
+         */
+        public Thresholds setEarlyAxisLock(int samples, float slopFraction, float velocity) {
+            mEarlyLockSamples = samples;
+            mEarlyLockSlopFraction = slopFraction;
+            mEarlyLockVelocity = velocity;
+            return this;
+        }
+
+        /**
+         * Fills the unset thresholds with the given defaults.
+         */
+        Thresholds resolve(float slop, float minFlingVelocity, float maxFlingVelocity,
+                           float earlyLockVelocity) {
+            if (mEarlyLockVelocity < 0) {
+                mEarlyLockVelocity = earlyLockVelocity;
+            }
+            if (mSlop < 0) {
+                mSlop = slop;
+            }
+            if (mMinFlingVelocity < 0) {
+                mMinFlingVelocity = minFlingVelocity;
+            }
+            if (mMaxFlingVelocity < 0) {
+                mMaxFlingVelocity = maxFlingVelocity;
+            }
+            return this;
+        }
+    }
+}
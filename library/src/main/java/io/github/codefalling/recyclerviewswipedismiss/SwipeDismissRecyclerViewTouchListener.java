@@ -21,119 +21,717 @@ package io.github.codefalling.recyclerviewswipedismiss;
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.animation.ValueAnimator;
+import android.graphics.Canvas;
 import android.graphics.Rect;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.os.SystemClock;
+import android.support.v4.util.LongSparseArray;
+import android.support.v4.view.AccessibilityDelegateCompat;
+import android.support.v4.view.ViewCompat;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.StaggeredGridLayoutManager;
+import android.util.SparseBooleanArray;
+import android.view.KeyEvent;
+import android.view.LayoutInflater;
 import android.view.MotionEvent;
-import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.view.ViewPropertyAnimator;
 import android.widget.ListView;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
-public class SwipeDismissRecyclerViewTouchListener implements View.OnTouchListener {
+public class SwipeDismissRecyclerViewTouchListener implements View.OnTouchListener,
+        RecyclerView.OnItemTouchListener {
     /**
-     * Max allowed duration for a "click", in milliseconds.
+     * Animation phases reported by {@link SwipeMetricsListener#onAnimationFrames}: the item
+     * following the finger or flying out, and the dismissed item collapsing.
      */
-    private static final int MAX_CLICK_DURATION = 1000;
+    public static final int METRICS_PHASE_TRANSLATE = 0;
+    public static final int METRICS_PHASE_COLLAPSE = 1;
+
+    /**
+     * Flags returned by {@link SwipePolicy#getSwipeFlags}, what swiping an item towards the
+     * negative end of the swipe axis (left, or up when vertical) or its positive end does.
+     */
+    public static final int SWIPE_DISMISS_NEGATIVE = 1;
+    public static final int SWIPE_DISMISS_POSITIVE = 1 << 1;
+    public static final int SWIPE_REVEAL_NEGATIVE = 1 << 2;
+    public static final int SWIPE_REVEAL_POSITIVE = 1 << 3;
+    public static final int SWIPE_DISMISS = SWIPE_DISMISS_NEGATIVE | SWIPE_DISMISS_POSITIVE;
+    public static final int SWIPE_REVEAL = SWIPE_REVEAL_NEGATIVE | SWIPE_REVEAL_POSITIVE;
+    private static final int SWIPE_NEGATIVE = SWIPE_DISMISS_NEGATIVE | SWIPE_REVEAL_NEGATIVE;
+    private static final int SWIPE_POSITIVE = SWIPE_DISMISS_POSITIVE | SWIPE_REVEAL_POSITIVE;
+
+    // A predicted drag leads the last touch sample by at most this fraction of the item
+    private static final float MAX_PREDICTION_FRACTION = 0.1f;
+
+    // Frames the collapse phase waits for the ItemAnimator to start after a commit
+    private static final int ITEM_ANIMATOR_START_FRAMES = 3;
+
+    // Phases of a SwipeState
+    private static final int PHASE_SWIPING = 0;
+    private static final int PHASE_DISMISSING = 1;
+    private static final int PHASE_COLLAPSING = 2;
+    private static final int PHASE_PENDING = 3;
+    private static final int PHASE_SETTLING = 4;
+    private static final int PHASE_REVEALED = 5;
+    private static final int PHASE_UNDOABLE = 6;
+    private static final int PHASE_COMMITTING = 7;
+
+    // Underlay views kept around for the next reveal, shared by all the items
+    private static final int MAX_POOLED_UNDERLAYS = 3;
+
+    private static final int INVALID_POINTER = -1;
+
+    // Reordered items are lifted by this elevation, in dp
+    private static final float REORDER_ELEVATION_DP = 8;
+    // Dragging an item this close to an edge, as a fraction of the list, scrolls the list
+    private static final float AUTO_SCROLL_EDGE_FRACTION = 0.15f;
+    // Lists per second scrolled with the item dragged all the way to an edge
+    private static final float AUTO_SCROLL_SPEED = 1f;
+    // A stall longer than this doesn't make the auto scroll jump
+    private static final long MAX_FRAME_MILLIS = 50;
+
+    // Position of an item whose position was lost by notifyDataSetChanged
+    private static final int POSITION_UNKNOWN = -2;
 
     // Cached ViewConfiguration and system-wide constant values
     private int mSlop;
-    private int mMinFlingVelocity;
-    private int mMaxFlingVelocity;
     private long mAnimationTime;
 
     // Fixed properties
     private RecyclerView mRecyclerView;
     private DismissCallbacks mCallbacks;
+    private BatchDismissCallbacks mBatchCallbacks;
     private boolean mIsVertical;
     private OnItemTouchCallBack mItemTouchCallback;
     private OnItemClickCallBack mItemClickCallback;
+    private OnItemLongClickCallBack mItemLongClickCallback;
 
-    private long pressStartTime;
+    // Taps and long presses are told apart from the event times, on the item found by the hit
+    // test of the down event
+    private RecyclerView.ViewHolder mDownViewHolder;
+    private boolean mLongPressed;
     private float pressedX;
     private float pressedY;
 
+    // Size of the list along the swipe axis, the size of the swiped items is kept in their state.
+    // Both are updated when laid out instead of being queried on every event.
     private int mViewWidth = 1; // 1 and not 0 to prevent dividing by zero
+    private final View.OnLayoutChangeListener mGeometryListener = new View.OnLayoutChangeListener() {
+        @Override
+        public void onLayoutChange(View view, int left, int top, int right, int bottom,
+                                   int oldLeft, int oldTop, int oldRight, int oldBottom) {
+            int extent = mIsVertical ? bottom - top : right - left;
+            if (view == mRecyclerView) {
+                if (extent > 0) {
+                    mViewWidth = extent;
+                }
+                return;
+            }
+            SwipeState state = findSwipeState(view);
+            if (state != null) {
+                state.extent = extent > 0 ? extent : mViewWidth;
+            }
+        }
+    };
 
     // Transient properties
-    private List<PendingDismissData> mPendingDismisses = new ArrayList<PendingDismissData>();
-    private int mDismissAnimationRefCount = 0;
-    private float mDownX;
-    private float mDownY;
-    private boolean mSwiping;
-    private int mSwipingSlop;
-    private VelocityTracker mVelocityTracker;
+    private List<SwipeState> mPendingDismisses = new ArrayList<SwipeState>();
+    private boolean mCommitScheduled;
+    private final SwipeDecisionEngine mDecisionEngine;
+    // The finger driving the gesture, another one takes over when it lifts
+    private int mActivePointerId = INVALID_POINTER;
     private int mDownPosition;
     private View mDownView;
+    private SwipeState mActiveSwipe;
     private boolean mPaused;
     private int mBackgroundPressId;
     private int mBackgroundNormalId;
 
+    // Every item being swiped or animating out has its own state, keyed by stable adapter id (or
+    // by a per swipe key when the adapter has no stable ids), so items dismiss independently
+    // Once as many states as swiped together were created, removing and adding states reuses the
+    // arrays of the map and the pool
+    private final LongSparseArray<SwipeState> mSwipeStates = new LongSparseArray<SwipeState>();
+    private final List<SwipeState> mSwipeStatePool = new ArrayList<SwipeState>();
+    private long mNextSwipeKey = Long.MIN_VALUE;
+    private RecyclerView.Adapter mObservedAdapter;
+
     private boolean hasMoveAfterDown;
 
+    private boolean mCollapseByLayout;
+    private boolean mUseHardwareLayer;
+    private boolean mFadeOnSwipe;
+
+    // Swipe-to-reveal
+    private int mRevealLayoutId;
+    private int mRevealOffset;
+    private OnRevealActionCallBack mRevealActionCallback;
+    private SwipeState mRevealedSwipe;
+    private boolean mUnderlayPressed;
+    private int mUnderlayDownX;
+    private int mUnderlayDownY;
+    private final List<View> mUnderlayPool = new ArrayList<View>();
+
+    // Dismissed items kept hidden in place until the undo window expires, oldest first
+    private long mUndoWindow;
+    private int mUndoMaxSize;
+    private OnUndoBufferChangedCallBack mUndoCallback;
+    private final List<SwipeState> mUndoBuffer = new ArrayList<SwipeState>();
+    private final Runnable mUndoTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            commitUndoable();
+        }
+    };
+
+    // Long press drag to reorder, along the list's axis. The dragged item follows the finger once
+    // per frame, which also scrolls the list near its edges and moves the item in the adapter.
+    private OnItemMoveCallBack mMoveCallback;
+    private float mReorderElevation;
+    private View mLongPressCandidate;
+    private View mReorderView;
+    private float mReorderTouch;
+    private float mReorderGrabOffset;
+    private long mReorderFrameTime;
+    private final Runnable mLongPressRunnable = new Runnable() {
+        @Override
+        public void run() {
+            performLongPress();
+        }
+    };
+    private final Runnable mReorderRunnable = new Runnable() {
+        @Override
+        public void run() {
+            stepReorder();
+        }
+    };
+
+    // Dismisses requested through the API or accessibility rather than swiped
+    private boolean mReducedMotion;
+    private AccessibilityDelegateCompat mAccessibilityDelegate;
+    // Delete or forward delete on a focused item dismisses it
+    private final View.OnKeyListener mDismissKeyListener = new View.OnKeyListener() {
+        @Override
+        public boolean onKey(View view, int keyCode, KeyEvent event) {
+            if (keyCode != KeyEvent.KEYCODE_DEL && keyCode != KeyEvent.KEYCODE_FORWARD_DEL
+                    || !event.hasNoModifiers() || mPaused) {
+                return false;
+            }
+            int position = mRecyclerView.getChildPosition(view);
+            if (position == RecyclerView.NO_POSITION || (getSwipeFlags(position) & SWIPE_DISMISS) == 0) {
+                return false;
+            }
+            // The up event of a handled down is consumed too
+            return event.getAction() != KeyEvent.ACTION_DOWN || event.getRepeatCount() > 0
+                    || dismiss(position);
+        }
+    };
+
+    // Answers of the swipe policy, keyed by stable id, or by position when the adapter has none
+    private SwipePolicy mSwipePolicy;
+    private final SwipeFlagsCache mSwipeFlagsCache = new SwipeFlagsCache(32);
+
+    // Dismissed items waiting to be removed from the data source on the commit executor, the
+    // items queued while a batch runs go together in the next one
+    private Executor mCommitExecutor;
+    private DataSourceCallbacks mDataSourceCallbacks;
+    private final List<SwipeState> mQueuedCommits = new ArrayList<SwipeState>();
+    private CommitBatch mRunningCommit;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Warms the item which comes into view once a dismissed item leaves, while the UI thread idles
+    private boolean mPrefetchViews;
+    private OnPrefetchCallBack mPrefetchCallback;
+    private int mPrefetchPosition = ListView.INVALID_POSITION;
+    // View types whose holders the pool doesn't keep, prefetching them would be wasted
+    private final SparseBooleanArray mUnpooledViewTypes = new SparseBooleanArray();
+    private boolean mPrefetchQueued;
+    private final MessageQueue.IdleHandler mPrefetchIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            mPrefetchQueued = false;
+            prefetchViewHolder();
+            return false;
+        }
+    };
+
+    // Metrics, every hook is skipped when no listener is set
+    private SwipeMetricsListener mMetricsListener;
+    private SwipeFrameMonitor mFrameMonitor;
+    private boolean mWatchItemAnimator;
+    private boolean mItemAnimatorStarted;
+    private int mItemAnimatorStartFrames;
+
+    // Set once the listener is added with RecyclerView.addOnItemTouchListener
+    private boolean mItemTouchMode;
+    private long mLastEventTime;
+    private int mLastAction = -1;
+
+    // Scratch objects reused by every gesture so the touch path doesn't allocate
+    private final int[] mTmpCoords = new int[2];
+    private MotionEvent mCancelEvent;
+    private View mPressedView;
+    private final Runnable mPressRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!hasMoveAfterDown && mPressedView != null) {
+                mPressedView.setBackgroundResource(mBackgroundPressId);
+            }
+        }
+    };
+    // The drag is rendered once per frame with the latest position
+    private boolean mDragScheduled;
+    private boolean mDragPending;
+    private float mPendingTranslation;
+    private long mPredictionMillis;
+    private final Runnable mDragRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mDragScheduled = false;
+            applyPendingDrag(mPredictionMillis > 0);
+        }
+    };
+    // Physics driven end animations, stepped together once per frame
+    private boolean mUsePhysics;
+    private boolean mPhysicsScheduled;
+    private final Runnable mPhysicsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mPhysicsScheduled = false;
+            stepPhysics();
+        }
+    };
+    private final Runnable mCommitRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mCommitScheduled = false;
+            dispatchPendingDismisses();
+        }
+    };
+    private final View.OnAttachStateChangeListener mResetOnDetachListener =
+            new View.OnAttachStateChangeListener() {
+                @Override
+                public void onViewAttachedToWindow(View view) {
+                }
+
+                @Override
+                public void onViewDetachedFromWindow(View view) {
+                    // The item was removed or scrolled away, make the view reusable again. An
+                    // animation still running would keep moving the recycled view, end it first.
+                    // The listener stays on the view, it is only added on its first swipe.
+                    view.removeOnLayoutChangeListener(mGeometryListener);
+                    SwipeState state = findSwipeState(view);
+                    if (state == null && !isOutOfPlace(view)) {
+                        return;
+                    }
+                    if (state != null) {
+                        // The view may be bound to another item before the state is committed
+                        if (state.collapseAnimator != null) {
+                            state.collapseAnimator.cancel();
+                            restoreViewExtent(state);
+                        }
+                        state.physics.stop();
+                        // Whatever the item was doing, the recycled view gets its layer type back
+                        restoreSwipeLayer(state);
+                        state.animating = false;
+                        if (mBatchCallbacks == null && (state.phase == PHASE_DISMISSING
+                                || state.phase == PHASE_UNDOABLE || state.phase == PHASE_PENDING)) {
+                            // DismissCallbacks are given the view. RecyclerView is laying out or
+                            // scrolling, so the commit still waits for the next frame, and the view
+                            // is kept from being rebound to another item until then.
+                            view.animate().setListener(null);
+                            holdDetachedDismiss(state);
+                        } else {
+                            state.view = null;
+                            if (state.phase == PHASE_DISMISSING) {
+                                view.animate().setListener(null);
+                                onDismissAnimationEnd(state);
+                            } else if (state.phase == PHASE_UNDOABLE) {
+                                // Scrolling a hidden item away commits the undo buffer, its view
+                                // can't stay hidden once rebound
+                                commitUndoable();
+                            } else if (state.phase != PHASE_COLLAPSING && state.phase != PHASE_PENDING
+                                    && state.phase != PHASE_COMMITTING) {
+                                // Swiped, settling or revealed, there is nothing to commit
+                                view.animate().setListener(null);
+                                if (state == mActiveSwipe) {
+                                    clearActiveSwipe();
+                                }
+                                releaseSwipeState(state);
+                            }
+                        }
+                    }
+                    view.animate().cancel();
+                    resetViewPresentation(view);
+                }
+            };
+
+    // Keeps the positions of the items being swiped in sync with adapter updates, so an item is
+    // still dismissed at the right position when data changes during the animation
+    private final RecyclerView.AdapterDataObserver mAdapterObserver =
+            new RecyclerView.AdapterDataObserver() {
+                @Override
+                public void onChanged() {
+                    mSwipeFlagsCache.clear();
+                    for (int i = mSwipeStates.size() - 1; i >= 0; i--) {
+                        SwipeState state = mSwipeStates.valueAt(i);
+                        if (state.position != ListView.INVALID_POSITION) {
+                            state.position = POSITION_UNKNOWN;
+                        }
+                    }
+                }
+
+                @Override
+                public void onItemRangeChanged(int positionStart, int itemCount) {
+                    boolean stableIds = mObservedAdapter.hasStableIds();
+                    for (int position = positionStart; position < positionStart + itemCount; position++) {
+                        mSwipeFlagsCache.remove(stableIds ? mObservedAdapter.getItemId(position) : position);
+                    }
+                }
+
+                @Override
+                public void onItemRangeInserted(int positionStart, int itemCount) {
+                    invalidatePositionedSwipeFlags();
+                    for (int i = mSwipeStates.size() - 1; i >= 0; i--) {
+                        SwipeState state = mSwipeStates.valueAt(i);
+                        if (state.position >= positionStart) {
+                            state.position += itemCount;
+                        }
+                    }
+                }
+
+                @Override
+                public void onItemRangeRemoved(int positionStart, int itemCount) {
+                    invalidatePositionedSwipeFlags();
+                    for (int i = mSwipeStates.size() - 1; i >= 0; i--) {
+                        SwipeState state = mSwipeStates.valueAt(i);
+                        if (state.position >= positionStart + itemCount) {
+                            state.position -= itemCount;
+                        } else if (state.position >= positionStart) {
+                            // Removed by someone else, there is nothing left to dismiss
+                            state.position = ListView.INVALID_POSITION;
+                        }
+                    }
+                }
+
+                // Not declared by AdapterDataObserver before recyclerview-v7 22
+                public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                    invalidatePositionedSwipeFlags();
+                    for (int i = mSwipeStates.size() - 1; i >= 0; i--) {
+                        SwipeState state = mSwipeStates.valueAt(i);
+                        int position = state.position;
+                        if (position < 0) {
+                            continue;
+                        }
+                        if (position >= fromPosition && position < fromPosition + itemCount) {
+                            state.position = position - fromPosition + toPosition;
+                        } else {
+                            if (position >= fromPosition + itemCount) {
+                                position -= itemCount;
+                            }
+                            if (position >= toPosition) {
+                                position += itemCount;
+                            }
+                            state.position = position;
+                        }
+                    }
+                }
+            };
+
     public SwipeDismissRecyclerViewTouchListener(Builder builder) {
         ViewConfiguration vc = ViewConfiguration.get(builder.mRecyclerView.getContext());
         mSlop = vc.getScaledTouchSlop();
-        mMinFlingVelocity = vc.getScaledMinimumFlingVelocity() * 16;
-        mMaxFlingVelocity = vc.getScaledMaximumFlingVelocity();
         mAnimationTime = builder.mRecyclerView.getContext().getResources().getInteger(
                 android.R.integer.config_shortAnimTime);
         mRecyclerView = builder.mRecyclerView;
         mCallbacks = builder.mCallbacks;
+        mBatchCallbacks = builder.mBatchCallbacks;
         mIsVertical = builder.mIsVertical;
+        mDecisionEngine = new SwipeDecisionEngine(mIsVertical,
+                new SwipeDecisionEngine.Thresholds(builder.mThresholds).resolve(mSlop,
+                        vc.getScaledMinimumFlingVelocity() * 16, vc.getScaledMaximumFlingVelocity(),
+                        vc.getScaledMinimumFlingVelocity()));
         mItemTouchCallback = builder.mItemTouchCallback;
         mItemClickCallback = builder.mItemClickCallback;
+        mItemLongClickCallback = builder.mItemLongClickCallback;
         mBackgroundNormalId = builder.mBackgroundNormalId;
         mBackgroundPressId = builder.mBackgroundPressId;
+        mCollapseByLayout = builder.mCollapseByLayout;
+        mUseHardwareLayer = builder.mUseHardwareLayer;
+        mFadeOnSwipe = builder.mFadeOnSwipe;
+        mRevealLayoutId = builder.mRevealLayoutId;
+        mRevealOffset = builder.mRevealOffset;
+        mRevealActionCallback = builder.mRevealActionCallback;
+        mUndoWindow = builder.mUndoWindow;
+        mUndoMaxSize = builder.mUndoMaxSize;
+        mUndoCallback = builder.mUndoCallback;
+        mMetricsListener = builder.mMetricsListener;
+        mPredictionMillis = builder.mPredictionMillis;
+        mUsePhysics = builder.mUsePhysics;
+        mPrefetchViews = builder.mPrefetchViews;
+        mPrefetchCallback = builder.mPrefetchCallback;
+        mCommitExecutor = builder.mCommitExecutor;
+        mSwipePolicy = builder.mSwipePolicy;
+        mMoveCallback = builder.mMoveCallback;
+        mReorderElevation = REORDER_ELEVATION_DP
+                * mRecyclerView.getResources().getDisplayMetrics().density;
+        mDataSourceCallbacks = builder.mDataSourceCallbacks;
+        if (mCommitExecutor != null && mBatchCallbacks == null) {
+            // The items can be scrolled away while they are removed, their views rebound
+            throw new IllegalArgumentException("setCommitExecutor needs BatchDismissCallbacks");
+        }
+        if (mMetricsListener != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mFrameMonitor = new SwipeFrameMonitor(new SwipeFrameMonitor.PhaseSource() {
+                @Override
+                public boolean isPhaseActive(int phase) {
+                    return isMetricsPhaseActive(phase);
+                }
+            }, mMetricsListener, mRecyclerView);
+        }
+        if (mRevealLayoutId != 0) {
+            mRecyclerView.addItemDecoration(new RevealDecoration());
+        }
+        mReducedMotion = builder.mReducedMotion;
+        if (builder.mAccessibilityActions) {
+            mAccessibilityDelegate = new DismissAccessibilityDelegate(
+                    mRecyclerView.getResources().getString(R.string.swipe_dismiss_action_dismiss));
+            mRecyclerView.addItemDecoration(new AccessibilityDecoration());
+        }
+
+        int viewWidth = mIsVertical ? mRecyclerView.getHeight() : mRecyclerView.getWidth();
+        if (viewWidth > 0) {
+            mViewWidth = viewWidth;
+        }
+        mRecyclerView.addOnLayoutChangeListener(mGeometryListener);
     }
 
     public void setEnabled(boolean enabled) {
         mPaused = !enabled;
     }
 
+    /**
+     * Forgets the answers of the swipe policy. They are already forgotten when the adapter
+     * notifies a change of the items, call this when the policy changes by itself.
+     */
+    public void invalidateSwipePolicy() {
+        mSwipeFlagsCache.clear();
+    }
+
+    /**
+     * @return number of dismissed items waiting in the undo buffer
+     */
+    public int getUndoableCount() {
+        return mUndoBuffer.size();
+    }
+
+    /**
+     * Brings back the most recently dismissed item still in the undo buffer.
+     *
+     * @return false if there was nothing to undo
+     */
+    public boolean undoLast() {
+        int size = mUndoBuffer.size();
+        if (size == 0) {
+            return false;
+        }
+        restoreUndoable(mUndoBuffer.remove(size - 1));
+        onUndoBufferChanged();
+        return true;
+    }
+
+    /**
+     * Brings back every dismissed item still in the undo buffer.
+     */
+    public void undoAll() {
+        if (mUndoBuffer.isEmpty()) {
+            return;
+        }
+        for (SwipeState state : mUndoBuffer) {
+            restoreUndoable(state);
+        }
+        mUndoBuffer.clear();
+        onUndoBufferChanged();
+    }
+
+    /**
+     * Commits every item of the undo buffer now, in one batch, without waiting for the undo
+     * window to expire.
+     */
+    public void commitUndoable() {
+        if (mUndoBuffer.isEmpty()) {
+            return;
+        }
+        for (SwipeState state : mUndoBuffer) {
+            finishDismiss(state);
+        }
+        mUndoBuffer.clear();
+        onUndoBufferChanged();
+    }
+
+    /**
+     * Dismisses the item at the given adapter position as if it had been swiped away, see
+     * {@link #dismissAll(int[])}.
+     *
+     * @return false if the item can't be dismissed or is already being dismissed
+     */
+    public boolean dismiss(int position) {
+        return dismissItem(position);
+    }
+
+    /**
+     * Dismisses the items at the given adapter positions as if they had been swiped away. They
+     * go through the undo buffer and are committed together in one batch. The items on screen fly
+     * out unless reduced motion is set, the others are dismissed at once. With
+     * {@link DismissCallbacks} only the items on screen can be dismissed, their view is needed.
+     *
+     * @return the number of items dismissed, the ones the swipe policy doesn't let dismiss and the
+     * ones already being dismissed are skipped
+     */
+    public int dismissAll(int[] positions) {
+        int count = 0;
+        for (int position : positions) {
+            if (dismissItem(position)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     @Override
     public boolean onTouch(View view, MotionEvent motionEvent) {
-        if (mViewWidth < 2) {
-            mViewWidth = mIsVertical ? mRecyclerView.getHeight() : mRecyclerView.getWidth();
+        return handleTouchEvent(motionEvent);
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(RecyclerView recyclerView, MotionEvent motionEvent) {
+        mItemTouchMode = true;
+        // RecyclerView offers an event it didn't intercept to its listeners again from
+        // onTouchEvent, don't track it twice
+        if (motionEvent.getEventTime() != mLastEventTime
+                || motionEvent.getActionMasked() != mLastAction) {
+            mLastEventTime = motionEvent.getEventTime();
+            mLastAction = motionEvent.getActionMasked();
+            handleTouchEvent(motionEvent);
         }
+        // Claim the gesture once it's recognized as a swipe, RecyclerView then cancels its own
+        // scrolling and the children's touch
+        return isSwiping();
+    }
+
+    @Override
+    public void onTouchEvent(RecyclerView recyclerView, MotionEvent motionEvent) {
+        mLastEventTime = motionEvent.getEventTime();
+        mLastAction = motionEvent.getActionMasked();
+        handleTouchEvent(motionEvent);
+    }
+
+    private boolean isSwiping() {
+        return mActiveSwipe != null && mActiveSwipe.swiping || mReorderView != null;
+    }
 
+    private boolean handleTouchEvent(MotionEvent motionEvent) {
         switch (motionEvent.getActionMasked()) {
             case MotionEvent.ACTION_DOWN: {
                 hasMoveAfterDown = false;
+                mUnderlayPressed = false;
+                if (mActiveSwipe != null) {
+                    // The previous gesture never ended
+                    abandonActiveSwipe();
+                }
+                cancelLongPress();
+                if (mReorderView != null) {
+                    endReorder();
+                }
 
-                pressStartTime = System.currentTimeMillis();
+                mDownViewHolder = null;
+                mLongPressed = false;
                 pressedX = motionEvent.getX();
                 pressedY = motionEvent.getY();
+                mActivePointerId = motionEvent.getPointerId(0);
 
                 if (mPaused) {
                     return false;
                 }
 
                 // Find the child view that was touched (perform a hit test)
-                Rect rect = new Rect();
-                int childCount = mRecyclerView.getChildCount();
-                int[] listViewCoords = new int[2];
-                mRecyclerView.getLocationOnScreen(listViewCoords);
-                int x = (int) motionEvent.getRawX() - listViewCoords[0];
-                int y = (int) motionEvent.getRawY() - listViewCoords[1];
-                View child;
+                mRecyclerView.getLocationOnScreen(mTmpCoords);
+                int x = (int) motionEvent.getRawX() - mTmpCoords[0];
+                int y = (int) motionEvent.getRawY() - mTmpCoords[1];
 
                 mDownView = mRecyclerView.findChildViewUnder(x, y);
+
+                if (mRevealedSwipe != null && mRevealedSwipe.view != mDownView) {
+                    if (isOverUnderlay(mRevealedSwipe, x, y)) {
+                        // Pressing one of the revealed actions
+                        mUnderlayPressed = true;
+                        mUnderlayDownX = x;
+                        mUnderlayDownY = y;
+                        mDownView = null;
+                        return false;
+                    }
+                    closeRevealedSwipe();
+                }
+
                 updateItemBackground(mDownView, motionEvent);
 
+                if (mDownView != null && hasLongPress()) {
+                    // The same hit test picks the item to long press or reorder if the press lasts
+                    mLongPressCandidate = mDownView;
+                    mReorderTouch = mIsVertical ? x : y;
+                    mRecyclerView.postDelayed(mLongPressRunnable, ViewConfiguration.getLongPressTimeout());
+                }
+
                 if (mDownView != null) {
-                    mDownX = motionEvent.getRawX();
-                    mDownY = motionEvent.getRawY();
+                    observeAdapter();
+                    // Kept for the whole gesture, its position follows the adapter changes
+                    mDownViewHolder = mRecyclerView.getChildViewHolder(mDownView);
+                    mDownPosition = mDownViewHolder.getPosition();
+                    SwipeState state = findSwipeState(mDownView);
+                    RecyclerView.Adapter adapter = mRecyclerView.getAdapter();
+                    if (state == null && adapter != null && adapter.hasStableIds()) {
+                        // A dismissed item whose view was detached and bound again is found by
+                        // its id, it can't be swiped again while it is still being committed
+                        state = mSwipeStates.get(mRecyclerView.getChildItemId(mDownView));
+                    }
+                    if (state != null && state.view == mDownView
+                            && (state.phase == PHASE_SETTLING || state.phase == PHASE_REVEALED)) {
+                        // Catch the item where it is
+                        stopSwipeAnimation(state);
+                        if (state == mRevealedSwipe) {
+                            mRevealedSwipe = null;
+                        }
+                        state.phase = PHASE_SWIPING;
+                        state.swiping = false;
+                        state.startTranslation = mIsVertical
+                                ? state.view.getTranslationY() : state.view.getTranslationX();
+                        mActiveSwipe = state;
+                    } else if (state == null) {
+                        int flags = getSwipeFlags(mDownPosition);
+                        if (flags != 0) {
+                            mActiveSwipe = obtainSwipeState(mDownView);
+                            mActiveSwipe.flags = flags;
+                        }
+                    }
 
-                    mDownPosition = mRecyclerView.getChildPosition(mDownView);
-                    if (mCallbacks.canDismiss(mDownPosition)) {
-                        mVelocityTracker = VelocityTracker.obtain();
-                        mVelocityTracker.addMovement(motionEvent);
+                    // An item that is already animating out has no active swipe
+                    if (mActiveSwipe != null) {
+                        mActiveSwipe.downX = motionEvent.getRawX();
+                        mActiveSwipe.downY = motionEvent.getRawY();
+                        mDecisionEngine.reset(motionEvent.getX(), motionEvent.getY(),
+                                motionEvent.getEventTime());
                     } else {
                         mDownView = null;
                     }
@@ -142,222 +740,225 @@ public class SwipeDismissRecyclerViewTouchListener implements View.OnTouchListen
             }
 
             case MotionEvent.ACTION_CANCEL: {
-                if (mVelocityTracker == null) {
+                cancelLongPress();
+                mDownViewHolder = null;
+                if (mReorderView != null) {
+                    endReorder();
+                    break;
+                }
+                if (mActiveSwipe == null) {
                     break;
                 }
 
                 updateItemBackground(mDownView, motionEvent);
+                applyPendingDrag(false);
 
-                if (mDownView != null && mSwiping) {
-                    // cancel
-                    if (mIsVertical) {
-                        mDownView.animate()
-                                .translationY(0)
-                                .alpha(1)
-                                .setDuration(mAnimationTime)
-                                .setListener(null);
-                    } else {
-                        mDownView.animate()
-                                .translationX(0)
-                                .alpha(1)
-                                .setDuration(mAnimationTime)
-                                .setListener(null);
-                    }
+                // cancel
+                if (mMetricsListener != null && mActiveSwipe.swiping) {
+                    mMetricsListener.onSwipeEnded(false);
+                }
+                abandonActiveSwipe();
+                break;
+            }
+
+            case MotionEvent.ACTION_POINTER_UP: {
+                int actionIndex = motionEvent.getActionIndex();
+                if (motionEvent.getPointerId(actionIndex) != mActivePointerId) {
+                    break;
+                }
+                // Hand the gesture over to another finger, continuing from where the lifted one
+                // left the item
+                int newIndex = actionIndex == 0 ? 1 : 0;
+                float shiftX = motionEvent.getX(newIndex) - motionEvent.getX(actionIndex);
+                float shiftY = motionEvent.getY(newIndex) - motionEvent.getY(actionIndex);
+                mActivePointerId = motionEvent.getPointerId(newIndex);
+                pressedX += shiftX;
+                pressedY += shiftY;
+                mReorderGrabOffset += mIsVertical ? shiftX : shiftY;
+                if (mActiveSwipe != null) {
+                    mActiveSwipe.downX += shiftX;
+                    mActiveSwipe.downY += shiftY;
+                    // The velocity of the lifted finger says nothing about the new one
+                    mDecisionEngine.reset(motionEvent.getX(newIndex), motionEvent.getY(newIndex),
+                            motionEvent.getEventTime());
                 }
-                mVelocityTracker.recycle();
-                mVelocityTracker = null;
-                mDownX = 0;
-                mDownY = 0;
-                mDownView = null;
-                mDownPosition = RecyclerView.NO_POSITION;
-                mSwiping = false;
                 break;
             }
 
             case MotionEvent.ACTION_UP: {
-                long pressDuration = System.currentTimeMillis() - pressStartTime;
-                if (pressDuration < MAX_CLICK_DURATION && distance(pressedX, pressedY, motionEvent.getX(), motionEvent.getY()) < mSlop) {
-                    mItemClickCallback.onClick(mRecyclerView.getChildPosition(mDownView));
+                cancelLongPress();
+                if (mReorderView != null) {
+                    endReorder();
                     return true;
                 }
 
+                if (mUnderlayPressed) {
+                    mUnderlayPressed = false;
+                    if (distance(pressedX, pressedY, motionEvent.getX(), motionEvent.getY())
+                            < mDecisionEngine.getSlop()) {
+                        performRevealAction(mUnderlayDownX, mUnderlayDownY);
+                        return true;
+                    }
+                    break;
+                }
+
                 updateItemBackground(mDownView, motionEvent);
 
-                if (!mSwiping && mDownView != null && mItemTouchCallback != null) {
-                    mItemTouchCallback.onTouch(mRecyclerView.getChildPosition(mDownView));
-                    mVelocityTracker.recycle();
-                    mVelocityTracker = null;
-                    mDownX = 0;
-                    mDownY = 0;
-                    mDownView = null;
-                    mDownPosition = ListView.INVALID_POSITION;
-                    mSwiping = false;
+                RecyclerView.ViewHolder holder = mDownViewHolder;
+                mDownViewHolder = null;
+                int position = holder != null ? holder.getPosition() : RecyclerView.NO_POSITION;
+                if (position != RecyclerView.NO_POSITION && mItemClickCallback != null
+                        && isTap(motionEvent)) {
+                    mItemClickCallback.onClick(position);
+                    abandonActiveSwipe();
+                    return true;
+                }
+
+                if (position != RecyclerView.NO_POSITION && mItemTouchCallback != null
+                        && isTap(motionEvent)) {
+                    mItemTouchCallback.onTouch(position);
+                    abandonActiveSwipe();
                     return true;
                 }
 
-                if (mVelocityTracker == null) {
+                if (mActiveSwipe == null) {
                     break;
                 }
 
-                float deltaX = motionEvent.getRawX() - mDownX;
-                float deltaY = motionEvent.getRawY() - mDownY;
-                mVelocityTracker.addMovement(motionEvent);
-                mVelocityTracker.computeCurrentVelocity(1000);
-                float velocityX = mVelocityTracker.getXVelocity();
-                float velocityY = mVelocityTracker.getYVelocity();
-                float absVelocityX = Math.abs(velocityX);
-                float absVelocityY = Math.abs(mVelocityTracker.getYVelocity());
-                boolean dismiss = false;
-                boolean dismissRight = false;
+                // The end animations start from where the item was last drawn
+                applyPendingDrag(false);
 
+                SwipeState swipe = mActiveSwipe;
+                int pointerIndex = Math.max(0, motionEvent.findPointerIndex(mActivePointerId));
+                float deltaX = getRawX(motionEvent, pointerIndex) - swipe.downX;
+                float deltaY = getRawY(motionEvent, pointerIndex) - swipe.downY;
                 if (mIsVertical) {
-                    if (Math.abs(deltaY) > mViewWidth / 2 && mSwiping) {
-                        dismiss = true;
-                        dismissRight = deltaY > 0;
-                    } else if (mMinFlingVelocity <= absVelocityY && absVelocityY <= mMaxFlingVelocity
-                            && absVelocityX < absVelocityY && mSwiping) {
-                        // dismiss only if flinging in the same direction as dragging
-                        dismiss = (velocityY < 0) == (deltaY < 0);
-                        dismissRight = mVelocityTracker.getYVelocity() > 0;
-                    }
-                    if (dismiss && mDownPosition != ListView.INVALID_POSITION) {
-                        // dismiss
-                        final View downView = mDownView; // mDownView gets null'd before animation ends
-                        final int downPosition = mDownPosition;
-                        ++mDismissAnimationRefCount;
-                        mDownView.animate()
-                                .translationY(dismissRight ? mViewWidth : -mViewWidth)
-                                .alpha(0)
-                                .setDuration(mAnimationTime)
-                                .setListener(new AnimatorListenerAdapter() {
-                                    @Override
-                                    public void onAnimationEnd(Animator animation) {
-                                        performDismiss(downView, downPosition);
-                                    }
-                                });
-                    } else {
-                        // cancel
-                        mDownView.animate()
-                                .translationY(0)
-                                .alpha(1)
-                                .setDuration(mAnimationTime)
-                                .setListener(null);
-                    }
-                    mVelocityTracker.recycle();
-                    mVelocityTracker = null;
-                    mDownX = 0;
-                    mDownY = 0;
-                    mDownView = null;
-                    mDownPosition = ListView.INVALID_POSITION;
-                    mSwiping = false;
+                    deltaY += swipe.startTranslation;
                 } else {
+                    deltaX += swipe.startTranslation;
+                }
+                int decision = SwipeDecisionEngine.DECISION_SETTLE;
+                if (swipe.swiping) {
+                    mDecisionEngine.addSample(motionEvent.getX(pointerIndex), motionEvent.getY(pointerIndex),
+                            motionEvent.getEventTime());
+                    mDecisionEngine.computeVelocity();
+                    decision = mDecisionEngine.decide(deltaX, deltaY, swipe.extent);
+                }
+                boolean dismissRight = decision == SwipeDecisionEngine.DECISION_DISMISS_POSITIVE;
+                boolean dismiss = decision != SwipeDecisionEngine.DECISION_SETTLE && (swipe.flags
+                        & (dismissRight ? SWIPE_DISMISS_POSITIVE : SWIPE_DISMISS_NEGATIVE)) != 0;
+                float velocity = !swipe.swiping ? 0
+                        : mIsVertical ? mDecisionEngine.getVelocityY() : mDecisionEngine.getVelocityX();
+
+                if (mMetricsListener != null && swipe.swiping) {
+                    mMetricsListener.onSwipeEnded(dismiss && swipe.position != ListView.INVALID_POSITION);
+                }
 
-                    if (Math.abs(deltaX) > mViewWidth / 2 && mSwiping) {
-                        dismiss = true;
-                        dismissRight = deltaX > 0;
-                    } else if (mMinFlingVelocity <= absVelocityX && absVelocityX <= mMaxFlingVelocity
-                            && absVelocityY < absVelocityX && mSwiping) {
-                        // dismiss only if flinging in the same direction as dragging
-                        dismiss = (velocityX < 0) == (deltaX < 0);
-                        dismissRight = mVelocityTracker.getXVelocity() > 0;
-                    }
-                    if (dismiss && mDownPosition != ListView.INVALID_POSITION) {
-                        // dismiss
-                        final View downView = mDownView; // mDownView gets null'd before animation ends
-                        final int downPosition = mDownPosition;
-                        ++mDismissAnimationRefCount;
-                        mDownView.animate()
-                                .translationX(dismissRight ? mViewWidth : -mViewWidth)
-                                .alpha(0)
-                                .setDuration(mAnimationTime)
-                                .setListener(new AnimatorListenerAdapter() {
-                                    @Override
-                                    public void onAnimationEnd(Animator animation) {
-                                        performDismiss(downView, downPosition);
-                                    }
-                                });
-                    } else {
-                        // cancel
-                        mDownView.animate()
-                                .translationX(0)
-                                .alpha(1)
-                                .setDuration(mAnimationTime)
-                                .setListener(null);
-                    }
-                    mVelocityTracker.recycle();
-                    mVelocityTracker = null;
-                    mDownX = 0;
-                    mDownY = 0;
-                    mDownView = null;
-                    mDownPosition = ListView.INVALID_POSITION;
-                    mSwiping = false;
+                if (dismiss && swipe.position != ListView.INVALID_POSITION) {
+                    // dismiss, the state lives on until the item is committed
+                    swipe.phase = PHASE_DISMISSING;
+                    swipe.upTime = motionEvent.getEventTime();
+                    watchDetach(swipe.view);
+                    animateSwipeTo(swipe, dismissRight ? mViewWidth : -mViewWidth, 0, velocity);
+                } else if (swipe.swiping && mRevealLayoutId != 0
+                        && isSwipeAllowed(swipe.flags & SWIPE_REVEAL, mIsVertical ? deltaY : deltaX)
+                        && Math.abs(mIsVertical ? deltaY : deltaX) > mRevealOffset / 2) {
+                    // Stop at the reveal offset, exposing the actions under the item
+                    float offset = (mIsVertical ? deltaY : deltaX) > 0 ? mRevealOffset : -mRevealOffset;
+                    swipe.phase = PHASE_REVEALED;
+                    mRevealedSwipe = swipe;
+                    animateSwipeTo(swipe, offset, 1, velocity);
+                } else {
+                    // cancel
+                    settleBack(swipe, velocity);
                 }
+                clearActiveSwipe();
                 break;
             }
 
             case MotionEvent.ACTION_MOVE: {
                 hasMoveAfterDown = true;
 
-                if (mVelocityTracker == null || mPaused) {
+                if (mReorderView != null || mLongPressCandidate != null) {
+                    int pointerIndex = motionEvent.findPointerIndex(mActivePointerId);
+                    if (pointerIndex < 0) {
+                        break;
+                    }
+                    float touchX = motionEvent.getX(pointerIndex);
+                    float touchY = motionEvent.getY(pointerIndex);
+                    if (mReorderView != null) {
+                        // Picked up by the next frame
+                        mReorderTouch = mIsVertical ? touchX : touchY;
+                        return true;
+                    }
+                    if (distance(pressedX, pressedY, touchX, touchY) > mDecisionEngine.getSlop()) {
+                        cancelLongPress();
+                    }
+                }
+
+                if (mActiveSwipe == null || mPaused) {
                     break;
                 }
 
                 updateItemBackground(mDownView, motionEvent);
 
-                mVelocityTracker.addMovement(motionEvent);
-                float deltaX = motionEvent.getRawX() - mDownX;
-                float deltaY = motionEvent.getRawY() - mDownY;
-                if (mIsVertical) {
-                    if ((Math.abs(deltaX) >= Math.abs(deltaY) / 2) && mBackgroundNormalId != 0) {
-                        mDownView.setBackgroundResource(mBackgroundNormalId);
-                    }
-
-                    if (Math.abs(deltaY) > mSlop && Math.abs(deltaX) < Math.abs(deltaY) / 2) {
-                        mSwiping = true;
-                        mSwipingSlop = (deltaY > 0 ? mSlop : -mSlop);
-                        mRecyclerView.requestDisallowInterceptTouchEvent(true);
-
-                        // Cancel ListView's touch (un-highlighting the item)
-                        MotionEvent cancelEvent = MotionEvent.obtain(motionEvent);
-                        cancelEvent.setAction(MotionEvent.ACTION_CANCEL |
-                                (motionEvent.getActionIndex()
-                                        << MotionEvent.ACTION_POINTER_INDEX_SHIFT));
-                        mRecyclerView.onTouchEvent(cancelEvent);
-                        cancelEvent.recycle();
+                SwipeState swipe = mActiveSwipe;
+                int pointerIndex = motionEvent.findPointerIndex(mActivePointerId);
+                if (pointerIndex < 0) {
+                    break;
+                }
+                // Every sample batched into the event counts for the velocity
+                for (int h = 0, historySize = motionEvent.getHistorySize(); h < historySize; h++) {
+                    mDecisionEngine.addSample(motionEvent.getHistoricalX(pointerIndex, h),
+                            motionEvent.getHistoricalY(pointerIndex, h), motionEvent.getHistoricalEventTime(h));
+                }
+                mDecisionEngine.addSample(motionEvent.getX(pointerIndex), motionEvent.getY(pointerIndex),
+                        motionEvent.getEventTime());
+                if (mPredictionMillis > 0 && mMetricsListener != null) {
+                    float predictionError = mDecisionEngine.takePredictionError();
+                    if (!Float.isNaN(predictionError)) {
+                        mMetricsListener.onPredictionError(predictionError);
                     }
+                }
+                float deltaX = getRawX(motionEvent, pointerIndex) - swipe.downX;
+                float deltaY = getRawY(motionEvent, pointerIndex) - swipe.downY;
+                if (mDecisionEngine.isOffAxis(deltaX, deltaY) && mBackgroundNormalId != 0) {
+                    swipe.view.setBackgroundResource(mBackgroundNormalId);
+                }
 
-                    if (mSwiping) {
-                        mDownView.setTranslationY(deltaY);
-                        mDownView.setAlpha(Math.max(0f, Math.min(1f,
-                                1f - 2f * Math.abs(deltaY) / mViewWidth)));
-                        return true;
+                if (!swipe.swiping) {
+                    int axis = mDecisionEngine.lockAxis(deltaX, deltaY);
+                    if (axis == SwipeDecisionEngine.AXIS_SWIPE
+                            && isSwipeAllowed(swipe.flags, mIsVertical ? deltaY : deltaX)) {
+                        startSwipe(swipe, motionEvent);
+                    } else if (axis == SwipeDecisionEngine.AXIS_SCROLL) {
+                        // Let go of the item at once, the list or a parent scrolls this gesture
+                        abandonActiveSwipe();
+                        break;
                     }
+                }
 
-                } else {
-                    if ((Math.abs(deltaY) >= Math.abs(deltaX) / 2) && mBackgroundNormalId != 0) {
-                        mDownView.setBackgroundResource(mBackgroundNormalId);
+                if (swipe.swiping) {
+                    // Only the latest position of the frame is drawn, in the animation pass which
+                    // follows the input of the same frame
+                    mPendingTranslation = swipe.startTranslation + (mIsVertical ? deltaY : deltaX);
+                    if (!isSwipeAllowed(swipe.flags, mPendingTranslation)) {
+                        // Held back at the resting place in a direction the policy forbids
+                        mPendingTranslation = 0;
                     }
-
-                    if (Math.abs(deltaX) > mSlop && Math.abs(deltaY) < Math.abs(deltaX) / 2) {
-                        mSwiping = true;
-                        mSwipingSlop = (deltaX > 0 ? mSlop : -mSlop);
-                        mRecyclerView.requestDisallowInterceptTouchEvent(true);
-
-                        // Cancel ListView's touch (un-highlighting the item)
-                        MotionEvent cancelEvent = MotionEvent.obtain(motionEvent);
-                        cancelEvent.setAction(MotionEvent.ACTION_CANCEL |
-                                (motionEvent.getActionIndex()
-                                        << MotionEvent.ACTION_POINTER_INDEX_SHIFT));
-                        mRecyclerView.onTouchEvent(cancelEvent);
-                        cancelEvent.recycle();
+                    if (!swipe.prefetched && (mPrefetchViews || mPrefetchCallback != null)
+                            && isSwipeAllowed(swipe.flags & SWIPE_DISMISS, mPendingTranslation)
+                            && mDecisionEngine.isPastDismissThreshold(mPendingTranslation, swipe.extent)) {
+                        // Released now, the item would be dismissed
+                        swipe.prefetched = true;
+                        prefetchIncomingItem();
                     }
-
-                    if (mSwiping) {
-                        mDownView.setTranslationX(deltaX);
-                        mDownView.setAlpha(Math.max(0f, Math.min(1f,
-                                1f - 2f * Math.abs(deltaX) / mViewWidth)));
-                        return true;
+                    mDragPending = true;
+                    if (!mDragScheduled) {
+                        mDragScheduled = true;
+                        ViewCompat.postOnAnimation(mRecyclerView, mDragRunnable);
                     }
+                    return true;
                 }
                 break;
             }
@@ -365,124 +966,1293 @@ public class SwipeDismissRecyclerViewTouchListener implements View.OnTouchListen
         return false;
     }
 
-    private void performDismiss(final View dismissView, final int dismissPosition) {
-        // Animate the dismissed list item to zero-height and fire the dismiss callback when
-        // all dismissed list item animations have completed. This triggers layout on each animation
-        // frame; in the future we may want to do something smarter and more performant.
+    private void startSwipe(SwipeState swipe, MotionEvent motionEvent) {
+        swipe.swiping = true;
+        mRecyclerView.requestDisallowInterceptTouchEvent(true);
+        // A nested scrolling parent stops taking this gesture as soon as the swipe is decided
+        ViewCompat.stopNestedScroll(mRecyclerView);
 
-        final ViewGroup.LayoutParams lp = dismissView.getLayoutParams();
-        final int originalHeight;
-        if (mIsVertical)
-            originalHeight = dismissView.getWidth();
-        else
-            originalHeight = dismissView.getHeight();
-
-        ValueAnimator animator = ValueAnimator.ofInt(originalHeight, 1).setDuration(mAnimationTime);
-
-        animator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                --mDismissAnimationRefCount;
-                if (mDismissAnimationRefCount == 0) {
-                    // No active animations, process all pending dismisses.
-                    // Sort by descending position
-                    Collections.sort(mPendingDismisses);
-
-                    int[] dismissPositions = new int[mPendingDismisses.size()];
-                    for (int i = mPendingDismisses.size() - 1; i >= 0; i--) {
-                        dismissPositions[i] = mPendingDismisses.get(i).position;
-                    }
-                    mCallbacks.onDismiss(dismissView);
-
-                    // Reset mDownPosition to avoid MotionEvent.ACTION_UP trying to start a dismiss
-                    // animation with a stale position
-                    mDownPosition = ListView.INVALID_POSITION;
-
-                    ViewGroup.LayoutParams lp;
-                    for (PendingDismissData pendingDismiss : mPendingDismisses) {
-                        // Reset view presentation
-                        pendingDismiss.view.setAlpha(1f);
-                        if (mIsVertical)
-                            pendingDismiss.view.setTranslationY(0);
-                        else
-                            pendingDismiss.view.setTranslationX(0);
-                        lp = pendingDismiss.view.getLayoutParams();
-                        if (mIsVertical)
-                            lp.width = originalHeight;
-                        else
-                            lp.height = originalHeight;
-
-                        pendingDismiss.view.setLayoutParams(lp);
-                    }
+        cancelRecyclerViewTouch(motionEvent);
+        watchDetach(swipe.view);
+        resolveItemGeometry(swipe);
 
-                    // Send a cancel event
-                    long time = SystemClock.uptimeMillis();
-                    MotionEvent cancelEvent = MotionEvent.obtain(time, time,
-                            MotionEvent.ACTION_CANCEL, 0, 0, 0);
-                    mRecyclerView.dispatchTouchEvent(cancelEvent);
+        if (mRevealLayoutId != 0 && swipe.underlay == null) {
+            swipe.underlay = obtainUnderlay();
+            mRecyclerView.invalidate();
+        }
 
-                    mPendingDismisses.clear();
-                }
-            }
-        });
+        if (mMetricsListener != null) {
+            mMetricsListener.onSwipeRecognized(motionEvent.getEventTime() - motionEvent.getDownTime());
+            startFrameMonitor();
+        }
 
-        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                if (mIsVertical)
-                    lp.width = (Integer) valueAnimator.getAnimatedValue();
-                else
-                    lp.height = (Integer) valueAnimator.getAnimatedValue();
-                dismissView.setLayoutParams(lp);
+        if (mUseHardwareLayer && mFadeOnSwipe) {
+            // Fading the item on a layer composites it once per frame instead of drawing the
+            // whole item hierarchy offscreen
+            swipe.layerType = swipe.view.getLayerType();
+            if (swipe.layerType != View.LAYER_TYPE_HARDWARE) {
+                swipe.view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
             }
-        });
-
-        mPendingDismisses.add(new PendingDismissData(dismissPosition, dismissView));
-        animator.start();
+        }
     }
 
-    public interface DismissCallbacks {
-        boolean canDismiss(int position);
+    /**
+     * Announces the item which scrolls into view once the swiped item is removed, the one after
+     * the last item shown, and warms its view holder when the UI thread is next idle.
+     */
+    private void prefetchIncomingItem() {
+        RecyclerView.Adapter adapter = mRecyclerView.getAdapter();
+        if (adapter == null) {
+            return;
+        }
+        int lastPosition = ListView.INVALID_POSITION;
+        for (int i = mRecyclerView.getChildCount() - 1; i >= 0; i--) {
+            lastPosition = Math.max(lastPosition, mRecyclerView.getChildPosition(mRecyclerView.getChildAt(i)));
+        }
+        int position = lastPosition + 1;
+        if (lastPosition == ListView.INVALID_POSITION || position >= adapter.getItemCount()) {
+            return;
+        }
 
-        void onDismiss(View view);
+        if (mPrefetchCallback != null) {
+            mPrefetchCallback.onPrefetch(position);
+        }
+        if (mPrefetchViews) {
+            mPrefetchPosition = position;
+            if (!mPrefetchQueued) {
+                mPrefetchQueued = true;
+                Looper.myQueue().addIdleHandler(mPrefetchIdleHandler);
+            }
+        }
     }
 
-    public interface OnItemTouchCallBack {
-        void onTouch(int position);
+    private void prefetchViewHolder() {
+        int position = mPrefetchPosition;
+        mPrefetchPosition = ListView.INVALID_POSITION;
+        RecyclerView.Adapter adapter = mRecyclerView.getAdapter();
+        if (adapter == null || position == ListView.INVALID_POSITION || position >= adapter.getItemCount()) {
+            return;
+        }
+        int viewType = adapter.getItemViewType(position);
+        RecyclerView.RecycledViewPool pool = mRecyclerView.getRecycledViewPool();
+        RecyclerView.ViewHolder holder = pool.getRecycledView(viewType);
+        if (holder != null) {
+            // One is already waiting, nothing to inflate
+            pool.putRecycledView(holder);
+            return;
+        }
+        if (mUnpooledViewTypes.get(viewType)) {
+            return;
+        }
+        // Inflated now instead of in the layout pass which brings the item in, RecyclerView only
+        // has to bind it then
+        pool.putRecycledView(adapter.createViewHolder(mRecyclerView, viewType));
+        holder = pool.getRecycledView(viewType);
+        if (holder != null) {
+            pool.putRecycledView(holder);
+        } else {
+            // Dropped, setMaxRecycledViews keeps none of this type
+            mUnpooledViewTypes.put(viewType, true);
+        }
     }
 
-    public interface OnItemClickCallBack {
-        void onClick(int position);
+    /**
+     * Looks up once per swipe how the item sits in the layout. Thresholds are relative to the
+     * item's own size, which is then followed through layout changes. A tile of a grid can't be
+     * collapsed by layout without leaving a hole, only items spanning the whole list can. Tiles
+     * are always left to the ItemAnimator, which reflows the grid with translations.
+     */
+    private void resolveItemGeometry(SwipeState swipe) {
+        RecyclerView.LayoutManager layoutManager = mRecyclerView.getLayoutManager();
+        ViewGroup.LayoutParams lp = swipe.view.getLayoutParams();
+        boolean fullSpan = true;
+        if (layoutManager instanceof GridLayoutManager && lp instanceof GridLayoutManager.LayoutParams) {
+            fullSpan = ((GridLayoutManager.LayoutParams) lp).getSpanSize()
+                    >= ((GridLayoutManager) layoutManager).getSpanCount();
+        } else if (layoutManager instanceof StaggeredGridLayoutManager
+                && lp instanceof StaggeredGridLayoutManager.LayoutParams) {
+            fullSpan = ((StaggeredGridLayoutManager.LayoutParams) lp).isFullSpan()
+                    || ((StaggeredGridLayoutManager) layoutManager).getSpanCount() == 1;
+        }
+        swipe.collapseByLayout = mCollapseByLayout && fullSpan;
+        int itemExtent = mIsVertical ? swipe.view.getHeight() : swipe.view.getWidth();
+        swipe.extent = itemExtent > 0 ? itemExtent : mViewWidth;
+        swipe.view.removeOnLayoutChangeListener(mGeometryListener);
+        swipe.view.addOnLayoutChangeListener(mGeometryListener);
     }
 
-    static public class Builder {
-        private RecyclerView mRecyclerView;
-        private DismissCallbacks mCallbacks;
+    /**
+     * Starts the animation which ends the swipe of the given state, moving it to translation and
+     * fading it to finalAlpha. The hardware layer taken by {@link #startSwipe} is handed over to
+     * the animation.
+     *
+     * @param velocity release velocity along the swipe axis, the physics animations start from it
+     */
+    private void animateSwipeTo(SwipeState swipe, float translation, float finalAlpha, float velocity) {
+        View view = swipe.view;
+        swipe.animating = true;
+        startFrameMonitor();
+
+        if (mUsePhysics) {
+            // The alpha follows the translation, the layer is kept until the motion ends
+            float from = mIsVertical ? view.getTranslationY() : view.getTranslationX();
+            long now = SystemClock.uptimeMillis();
+            if (swipe.phase == PHASE_DISMISSING) {
+                // Fly out no slower than the regular animation and stop as soon as the item left
+                // the list
+                float limit;
+                if (translation > 0) {
+                    limit = mIsVertical ? mRecyclerView.getHeight() - view.getTop()
+                            : mRecyclerView.getWidth() - view.getLeft();
+                } else {
+                    limit = -(mIsVertical ? view.getBottom() : view.getRight());
+                }
+                swipe.physics.startFling(from, velocity, mViewWidth * 1000f / mAnimationTime, limit, now);
+            } else {
+                swipe.physics.startSpring(from, velocity, translation, now);
+            }
+            if (!mPhysicsScheduled) {
+                mPhysicsScheduled = true;
+                ViewCompat.postOnAnimation(mRecyclerView, mPhysicsRunnable);
+            }
+            return;
+        }
 
-        private OnItemTouchCallBack mItemTouchCallback = null;
-        private OnItemClickCallBack mItemClickCallback = null;
-        private boolean mIsVertical = false;
-        private int mBackgroundPressId;
-        private int mBackgroundNormalId;
+        restoreSwipeLayer(swipe);
+        ViewPropertyAnimator animator = view.animate().setDuration(mAnimationTime);
+        if (mUseHardwareLayer && mFadeOnSwipe && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            animator.withLayer();
+        }
+        if (mFadeOnSwipe) {
+            animator.alpha(finalAlpha);
+        }
+        if (mIsVertical) {
+            animator.translationY(translation);
+        } else {
+            animator.translationX(translation);
+        }
+        animator.setListener(swipe);
+    }
 
-        public Builder(RecyclerView recyclerView, DismissCallbacks callbacks) {
-            mRecyclerView = recyclerView;
-            mCallbacks = callbacks;
+    private void stepPhysics() {
+        long now = SystemClock.uptimeMillis();
+        boolean running = false;
+        boolean finished = false;
+        for (int i = mSwipeStates.size() - 1; i >= 0; i--) {
+            SwipeState state = mSwipeStates.valueAt(i);
+            SwipePhysics physics = state.physics;
+            if (!physics.isRunning() || state.view == null) {
+                continue;
+            }
+            finished |= physics.step(now);
+            running |= physics.isRunning();
+            if (mIsVertical) {
+                state.view.setTranslationY(physics.position);
+            } else {
+                state.view.setTranslationX(physics.position);
+            }
+            updateSwipeAlpha(state, physics.position);
         }
 
-        public Builder setIsVertical(boolean isVertical) {
-            mIsVertical = isVertical;
-            return this;
+        // Ending a swipe may release other states, look them up again after each one
+        while (finished) {
+            finished = false;
+            for (int i = mSwipeStates.size() - 1; i >= 0; i--) {
+                SwipeState state = mSwipeStates.valueAt(i);
+                if (state.physics.mode == SwipePhysics.MODE_FINISHED) {
+                    state.physics.stop();
+                    restoreSwipeLayer(state);
+                    state.onSwipeAnimationEnd();
+                    finished = true;
+                    break;
+                }
+            }
         }
 
-        public Builder setItemTouchCallback(OnItemTouchCallBack callBack) {
-            mItemTouchCallback = callBack;
-            return this;
+        if (running && !mPhysicsScheduled) {
+            mPhysicsScheduled = true;
+            ViewCompat.postOnAnimation(mRecyclerView, mPhysicsRunnable);
         }
+    }
 
-        public Builder setItemClickCallback(OnItemClickCallBack callBack) {
-            mItemClickCallback = callBack;
-            return this;
+    /**
+     * Stops the end animation of the state, leaving the item where it is.
+     */
+    private void stopSwipeAnimation(SwipeState state) {
+        state.view.animate().setListener(null);
+        state.view.animate().cancel();
+        if (state.physics.isRunning()) {
+            state.physics.stop();
+            restoreSwipeLayer(state);
+        }
+        state.animating = false;
+    }
+
+    /**
+     * Gives the item back the layer type it had before {@link #startSwipe}.
+     */
+    private void restoreSwipeLayer(SwipeState swipe) {
+        if (mUseHardwareLayer && mFadeOnSwipe && swipe.layerType != View.LAYER_TYPE_HARDWARE) {
+            swipe.view.setLayerType(swipe.layerType, null);
+        }
+    }
+
+    /**
+     * Draws the active swipe at the latest touch position.
+     *
+     * @param predict whether to lead the touch position by where the finger is predicted to be
+     *                when the frame is shown
+     */
+    private void applyPendingDrag(boolean predict) {
+        if (!mDragPending) {
+            return;
+        }
+        mDragPending = false;
+        SwipeState swipe = mActiveSwipe;
+        if (swipe == null || swipe.view == null) {
+            return;
+        }
+
+        float translation = mPendingTranslation;
+        if (predict) {
+            float offset = mDecisionEngine.predictOffset(SystemClock.uptimeMillis() + mPredictionMillis,
+                    swipe.extent * MAX_PREDICTION_FRACTION);
+            if (offset != 0) {
+                translation += offset;
+                // Draw again next frame, so the lead goes away if the finger stops
+                mDragPending = true;
+                if (!mDragScheduled) {
+                    mDragScheduled = true;
+                    ViewCompat.postOnAnimation(mRecyclerView, mDragRunnable);
+                }
+            }
+        }
+
+        if (mIsVertical) {
+            swipe.view.setTranslationY(translation);
+        } else {
+            swipe.view.setTranslationX(translation);
+        }
+        updateSwipeAlpha(swipe, translation);
+    }
+
+    private void updateSwipeAlpha(SwipeState swipe, float translation) {
+        if (!mFadeOnSwipe) {
+            return;
+        }
+        // A revealing item only starts fading once it goes past the reveal offset
+        float distance = Math.max(0f, Math.abs(translation) - mRevealOffset);
+        swipe.view.setAlpha(Math.max(0f, Math.min(1f, 1f - 2f * distance / swipe.extent)));
+    }
+
+    /**
+     * Animates the state's item back to its resting place, the state is released once it gets
+     * there.
+     */
+    private void settleBack(SwipeState swipe, float velocity) {
+        float translation = mIsVertical ? swipe.view.getTranslationY() : swipe.view.getTranslationX();
+        if (!swipe.swiping && translation == 0) {
+            releaseSwipeState(swipe);
+            return;
+        }
+        swipe.phase = PHASE_SETTLING;
+        animateSwipeTo(swipe, 0, 1, velocity);
+    }
+
+    private void abandonActiveSwipe() {
+        if (mActiveSwipe != null) {
+            settleBack(mActiveSwipe, 0);
+        }
+        clearActiveSwipe();
+    }
+
+    private void closeRevealedSwipe() {
+        SwipeState revealed = mRevealedSwipe;
+        mRevealedSwipe = null;
+        revealed.view.animate().setListener(null);
+        settleBack(revealed, 0);
+    }
+
+    private boolean isOverUnderlay(SwipeState state, int x, int y) {
+        View view = state.view;
+        return view != null && state.underlay != null
+                && x >= view.getLeft() && x < view.getRight()
+                && y >= view.getTop() && y < view.getBottom();
+    }
+
+    private void performRevealAction(int x, int y) {
+        SwipeState revealed = mRevealedSwipe;
+        if (revealed == null || !isOverUnderlay(revealed, x, y)) {
+            return;
+        }
+
+        // Find the action under the tap, the underlay is laid out over the item's bounds
+        View underlay = revealed.underlay;
+        int underlayX = x - revealed.view.getLeft();
+        int underlayY = y - revealed.view.getTop();
+        int actionId = underlay.getId();
+        if (underlay instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) underlay;
+            for (int i = group.getChildCount() - 1; i >= 0; i--) {
+                View action = group.getChildAt(i);
+                if (action.getVisibility() == View.VISIBLE
+                        && underlayX >= action.getLeft() && underlayX < action.getRight()
+                        && underlayY >= action.getTop() && underlayY < action.getBottom()) {
+                    actionId = action.getId();
+                    break;
+                }
+            }
+        }
+
+        int position = revealed.position;
+        closeRevealedSwipe();
+        if (mRevealActionCallback != null && actionId != View.NO_ID
+                && position != ListView.INVALID_POSITION) {
+            mRevealActionCallback.onRevealAction(position, actionId);
+        }
+    }
+
+    private View obtainUnderlay() {
+        int size = mUnderlayPool.size();
+        if (size > 0) {
+            return mUnderlayPool.remove(size - 1);
+        }
+        // Inflated lazily, most items are never swiped
+        return LayoutInflater.from(mRecyclerView.getContext())
+                .inflate(mRevealLayoutId, mRecyclerView, false);
+    }
+
+    private void recycleUnderlay(View underlay) {
+        if (mUnderlayPool.size() < MAX_POOLED_UNDERLAYS) {
+            mUnderlayPool.add(underlay);
+        }
+        mRecyclerView.invalidate();
+    }
+
+    private void watchDetach(View view) {
+        // Added once for the life of the view, every change copies the view's attach listeners
+        if (view.getTag(R.id.swipe_dismiss_detach_listener) != mResetOnDetachListener) {
+            view.setTag(R.id.swipe_dismiss_detach_listener, mResetOnDetachListener);
+            view.addOnAttachStateChangeListener(mResetOnDetachListener);
+        }
+    }
+
+    private void clearActiveSwipe() {
+        mDragPending = false;
+        mActiveSwipe = null;
+        mDownView = null;
+        mDownPosition = ListView.INVALID_POSITION;
+    }
+
+    private SwipeState obtainSwipeState(View view) {
+        RecyclerView.Adapter adapter = mRecyclerView.getAdapter();
+        long itemId = adapter != null && adapter.hasStableIds()
+                ? mRecyclerView.getChildItemId(view) : RecyclerView.NO_ID;
+        return obtainSwipeState(view, mRecyclerView.getChildPosition(view), itemId);
+    }
+
+    /**
+     * @param view view of the item, null when the item isn't on screen
+     */
+    private SwipeState obtainSwipeState(View view, int position, long itemId) {
+        int size = mSwipeStatePool.size();
+        SwipeState state = size > 0 ? mSwipeStatePool.remove(size - 1) : new SwipeState();
+        state.itemId = itemId;
+        state.key = state.itemId != RecyclerView.NO_ID ? state.itemId : mNextSwipeKey++;
+        state.view = view;
+        state.layerType = view != null ? view.getLayerType() : View.LAYER_TYPE_NONE;
+        state.position = position;
+        state.phase = PHASE_SWIPING;
+        state.swiping = false;
+        state.immediate = false;
+        state.startTranslation = 0;
+        state.prefetched = false;
+        state.collapseByLayout = mCollapseByLayout;
+        state.extent = mViewWidth;
+        mSwipeStates.put(state.key, state);
+        return state;
+    }
+
+    private void releaseSwipeState(SwipeState state) {
+        if (state == null) {
+            return;
+        }
+        mSwipeStates.remove(state.key);
+        if (state == mRevealedSwipe) {
+            mRevealedSwipe = null;
+        }
+        if (state.underlay != null) {
+            recycleUnderlay(state.underlay);
+            state.underlay = null;
+        }
+        if (state.view != null) {
+            state.view.removeOnLayoutChangeListener(mGeometryListener);
+        }
+        if (state.heldViewHolder != null) {
+            state.heldViewHolder.setIsRecyclable(true);
+            state.heldViewHolder = null;
+        }
+        state.view = null;
+        state.collapseAnimator = null;
+        state.animating = false;
+        state.physics.stop();
+        mSwipeStatePool.add(state);
+    }
+
+    private void observeAdapter() {
+        RecyclerView.Adapter adapter = mRecyclerView.getAdapter();
+        if (adapter == mObservedAdapter) {
+            return;
+        }
+        if (mObservedAdapter != null) {
+            mObservedAdapter.unregisterAdapterDataObserver(mAdapterObserver);
+        }
+        if (adapter != null) {
+            adapter.registerAdapterDataObserver(mAdapterObserver);
+        }
+        mObservedAdapter = adapter;
+        mSwipeFlagsCache.clear();
+        mUnpooledViewTypes.clear();
+    }
+
+    /**
+     * Resolves the adapter position of a state whose position was lost by notifyDataSetChanged,
+     * this is only possible when the adapter has stable ids.
+     */
+    private void resolvePosition(SwipeState state) {
+        if (state.position != POSITION_UNKNOWN) {
+            return;
+        }
+        state.position = ListView.INVALID_POSITION;
+        RecyclerView.Adapter adapter = mRecyclerView.getAdapter();
+        if (state.itemId == RecyclerView.NO_ID || adapter == null) {
+            return;
+        }
+        for (int i = adapter.getItemCount() - 1; i >= 0; i--) {
+            if (adapter.getItemId(i) == state.itemId) {
+                state.position = i;
+                return;
+            }
+        }
+    }
+
+    private SwipeState findSwipeState(int position) {
+        for (int i = mSwipeStates.size() - 1; i >= 0; i--) {
+            SwipeState state = mSwipeStates.valueAt(i);
+            if (state.position == position) {
+                return state;
+            }
+        }
+        return null;
+    }
+
+    private SwipeState findSwipeState(View view) {
+        for (int i = mSwipeStates.size() - 1; i >= 0; i--) {
+            SwipeState state = mSwipeStates.valueAt(i);
+            if (state.view == view) {
+                return state;
+            }
+        }
+        return null;
+    }
+
+    private void onDismissAnimationEnd(SwipeState state) {
+        if (state.phase == PHASE_DISMISSING && mUndoWindow > 0) {
+            // Keep the item hidden in place, nothing is committed before the undo window expires
+            state.phase = PHASE_UNDOABLE;
+            if (state.underlay != null) {
+                recycleUnderlay(state.underlay);
+                state.underlay = null;
+            }
+            mUndoBuffer.add(state);
+            if (mUndoBuffer.size() > mUndoMaxSize) {
+                commitUndoable();
+            } else {
+                onUndoBufferChanged();
+            }
+            return;
+        }
+        finishDismiss(state);
+    }
+
+    private void finishDismiss(SwipeState state) {
+        if (state.phase != PHASE_COLLAPSING && state.collapseByLayout && state.view != null
+                && !state.immediate) {
+            state.phase = PHASE_COLLAPSING;
+            animateCollapse(state);
+            return;
+        }
+
+        // Commit on the next frame, together with every other item finished by then, instead of
+        // waiting for the items still animating
+        state.phase = PHASE_PENDING;
+        mPendingDismisses.add(state);
+        if (!mCommitScheduled) {
+            mCommitScheduled = true;
+            ViewCompat.postOnAnimation(mRecyclerView, mCommitRunnable);
+        }
+    }
+
+    private void holdDetachedDismiss(SwipeState state) {
+        if (state.heldViewHolder == null && state.view.getParent() == mRecyclerView) {
+            state.heldViewHolder = mRecyclerView.getChildViewHolder(state.view);
+            state.heldViewHolder.setIsRecyclable(false);
+        }
+        // A detached view can't collapse
+        state.immediate = true;
+        if (state.phase == PHASE_UNDOABLE) {
+            mUndoBuffer.remove(state);
+            onUndoBufferChanged();
+            finishDismiss(state);
+        } else if (state.phase == PHASE_DISMISSING) {
+            finishDismiss(state);
+        }
+    }
+
+    private void restoreUndoable(SwipeState state) {
+        if (state.view == null || !isBoundTo(state)) {
+            if (state.view != null) {
+                resetViewPresentation(state.view);
+            }
+            releaseSwipeState(state);
+            return;
+        }
+        // The view is still bound to the item, animate it back without any rebind
+        state.swiping = true;
+        settleBack(state, 0);
+    }
+
+    private void onUndoBufferChanged() {
+        // The window restarts with every change, a burst of dismisses is committed together
+        mRecyclerView.removeCallbacks(mUndoTimeoutRunnable);
+        if (!mUndoBuffer.isEmpty()) {
+            mRecyclerView.postDelayed(mUndoTimeoutRunnable, mUndoWindow);
+        }
+        if (mUndoCallback != null) {
+            mUndoCallback.onUndoBufferChanged(mUndoBuffer.size());
+        }
+    }
+
+    private void animateCollapse(SwipeState state) {
+        // Animate the dismissed list item to zero-height and fire the dismiss callback when the
+        // animation completes. This triggers layout on each animation frame, use it only when the
+        // adapter can't remove items with notifyItemRemoved.
+        View dismissView = state.view;
+        if (mIsVertical)
+            state.originalExtent = dismissView.getWidth();
+        else
+            state.originalExtent = dismissView.getHeight();
+
+        ValueAnimator animator = ValueAnimator.ofInt(state.originalExtent, 1).setDuration(mAnimationTime);
+        animator.addListener(state);
+        animator.addUpdateListener(state);
+        state.collapseAnimator = animator;
+        animator.start();
+        startFrameMonitor();
+    }
+
+    private void restoreViewExtent(SwipeState state) {
+        if (state.collapseAnimator == null) {
+            return;
+        }
+        state.collapseAnimator = null;
+        ViewGroup.LayoutParams lp = state.view.getLayoutParams();
+        if (mIsVertical)
+            lp.width = state.originalExtent;
+        else
+            lp.height = state.originalExtent;
+
+        state.view.setLayoutParams(lp);
+    }
+
+    private boolean dismissItem(int position) {
+        RecyclerView.Adapter adapter = mRecyclerView.getAdapter();
+        if (adapter == null || position < 0 || position >= adapter.getItemCount()) {
+            return false;
+        }
+        int flags = getSwipeFlags(position);
+        if ((flags & SWIPE_DISMISS) == 0) {
+            return false;
+        }
+        RecyclerView.ViewHolder holder = mRecyclerView.findViewHolderForPosition(position);
+        View view = holder != null ? holder.itemView : null;
+        if (view == null && mBatchCallbacks == null) {
+            // DismissCallbacks are given the view of the item
+            return false;
+        }
+        observeAdapter();
+
+        long itemId = adapter.hasStableIds() ? adapter.getItemId(position) : RecyclerView.NO_ID;
+        SwipeState state = view != null ? findSwipeState(view) : null;
+        if (state == null) {
+            state = itemId != RecyclerView.NO_ID ? mSwipeStates.get(itemId)
+                    : view == null ? findSwipeState(position) : null;
+        }
+        if (state != null) {
+            if (state != mActiveSwipe && state.phase != PHASE_SETTLING && state.phase != PHASE_REVEALED) {
+                // Already on its way out
+                return false;
+            }
+            if (state == mActiveSwipe) {
+                clearActiveSwipe();
+            }
+            if (state == mRevealedSwipe) {
+                mRevealedSwipe = null;
+            }
+            if (state.view != null) {
+                stopSwipeAnimation(state);
+            }
+        } else if (view != null) {
+            state = obtainSwipeState(view, position, itemId);
+            watchDetach(view);
+            resolveItemGeometry(state);
+        } else {
+            state = obtainSwipeState(null, position, itemId);
+        }
+        state.flags = flags;
+        state.phase = PHASE_DISMISSING;
+        state.upTime = SystemClock.uptimeMillis();
+        state.immediate = view == null || mReducedMotion;
+
+        float translation = (flags & SWIPE_DISMISS_POSITIVE) != 0 ? mViewWidth : -mViewWidth;
+        if (state.immediate) {
+            // Skip the animations, straight to where the fly out would have left the item
+            if (view != null) {
+                restoreSwipeLayer(state);
+                if (mFadeOnSwipe) {
+                    view.setAlpha(0);
+                }
+                if (mIsVertical) {
+                    view.setTranslationY(translation);
+                } else {
+                    view.setTranslationX(translation);
+                }
+            }
+            onDismissAnimationEnd(state);
+        } else {
+            state.swiping = true;
+            animateSwipeTo(state, translation, 0, 0);
+        }
+        return true;
+    }
+
+    private void cancelLongPress() {
+        if (mLongPressCandidate != null) {
+            mRecyclerView.removeCallbacks(mLongPressRunnable);
+            mLongPressCandidate = null;
+        }
+    }
+
+    private boolean hasLongPress() {
+        return mMoveCallback != null || mItemLongClickCallback != null;
+    }
+
+    /**
+     * Whether the gesture ending with the given up event is a tap on the down item: it stayed
+     * within the slop and was released before it became a long press.
+     */
+    private boolean isTap(MotionEvent upEvent) {
+        if (mLongPressed || isSwiping() || distance(pressedX, pressedY, upEvent.getX(),
+                upEvent.getY()) >= mDecisionEngine.getSlop()) {
+            return false;
+        }
+        // The long press may be late on a busy main thread, or not watched at all, the event
+        // times are always there
+        return upEvent.getEventTime() - upEvent.getDownTime() < ViewConfiguration.getLongPressTimeout();
+    }
+
+    private void performLongPress() {
+        View view = mLongPressCandidate;
+        mLongPressCandidate = null;
+        RecyclerView.ViewHolder holder = mDownViewHolder;
+        if (view == null || holder == null || mPaused || isSwiping() || view.getParent() != mRecyclerView) {
+            return;
+        }
+        int position = holder.getPosition();
+        if (position == RecyclerView.NO_POSITION) {
+            return;
+        }
+        mLongPressed = true;
+
+        if (mItemLongClickCallback != null && mItemLongClickCallback.onLongClick(position)) {
+            // Handled, the rest of the gesture neither swipes nor reorders
+            updateItemBackground(view, obtainCancelEvent(pressedX, pressedY));
+            abandonActiveSwipe();
+            return;
+        }
+        if (mMoveCallback != null && mMoveCallback.canMove(position)) {
+            startReorder(view);
+        }
+    }
+
+    private void startReorder(View view) {
+
+        // The swipe hasn't started, the reorder takes the gesture over
+        abandonActiveSwipe();
+        mReorderView = view;
+        mReorderGrabOffset = mReorderTouch - (mIsVertical ? view.getLeft() : view.getTop());
+        mRecyclerView.requestDisallowInterceptTouchEvent(true);
+        if (!mItemTouchMode) {
+            // RecyclerView would otherwise scroll along with the drag
+            mRecyclerView.onTouchEvent(obtainCancelEvent(pressedX, pressedY));
+        }
+        ViewCompat.setTranslationZ(view, mReorderElevation);
+        mReorderFrameTime = SystemClock.uptimeMillis();
+        ViewCompat.postOnAnimation(mRecyclerView, mReorderRunnable);
+    }
+
+    private void stepReorder() {
+        View view = mReorderView;
+        if (view == null) {
+            return;
+        }
+        if (view.getParent() != mRecyclerView) {
+            // Recycled under the finger, there is nothing left to drag
+            endReorder();
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        long frameMillis = Math.min(now - mReorderFrameTime, MAX_FRAME_MILLIS);
+        mReorderFrameTime = now;
+
+        // Scroll faster the closer the finger gets to an edge
+        int listExtent = mIsVertical ? mRecyclerView.getWidth() : mRecyclerView.getHeight();
+        float edge = listExtent * AUTO_SCROLL_EDGE_FRACTION;
+        float depth = 0;
+        if (mReorderTouch < edge) {
+            depth = mReorderTouch / edge - 1;
+        } else if (mReorderTouch > listExtent - edge) {
+            depth = (mReorderTouch - listExtent + edge) / edge;
+        }
+        if (depth != 0 && frameMillis > 0) {
+            depth = Math.max(-1, Math.min(1, depth));
+            int scroll = (int) (depth * listExtent * AUTO_SCROLL_SPEED * frameMillis / 1000);
+            if (scroll == 0) {
+                scroll = depth > 0 ? 1 : -1;
+            }
+            if (mIsVertical) {
+                mRecyclerView.scrollBy(scroll, 0);
+            } else {
+                mRecyclerView.scrollBy(0, scroll);
+            }
+        }
+
+        // Follow the finger from wherever the item is laid out, the ItemAnimator mustn't move it
+        RecyclerView.ItemAnimator itemAnimator = mRecyclerView.getItemAnimator();
+        if (itemAnimator != null) {
+            itemAnimator.endAnimation(mRecyclerView.getChildViewHolder(view));
+        }
+        float translation = mReorderTouch - mReorderGrabOffset - (mIsVertical ? view.getLeft() : view.getTop());
+        if (mIsVertical) {
+            view.setTranslationX(translation);
+        } else {
+            view.setTranslationY(translation);
+        }
+
+        // One move per frame for every slot passed, once the previous one is laid out
+        if (!mRecyclerView.isLayoutRequested()) {
+            int from = mRecyclerView.getChildPosition(view);
+            int to = findReorderTarget(view);
+            if (from != ListView.INVALID_POSITION && to != ListView.INVALID_POSITION && to != from
+                    && mMoveCallback.canMove(to)) {
+                mMoveCallback.onItemMove(from, to);
+            }
+        }
+
+        ViewCompat.postOnAnimation(mRecyclerView, mReorderRunnable);
+    }
+
+    /**
+     * Returns the position of the item under the center of the dragged one.
+     */
+    private int findReorderTarget(View dragged) {
+        float centerX = dragged.getLeft() + dragged.getTranslationX() + dragged.getWidth() / 2f;
+        float centerY = dragged.getTop() + dragged.getTranslationY() + dragged.getHeight() / 2f;
+        for (int i = mRecyclerView.getChildCount() - 1; i >= 0; i--) {
+            View child = mRecyclerView.getChildAt(i);
+            if (child != dragged && centerX >= child.getLeft() && centerX < child.getRight()
+                    && centerY >= child.getTop() && centerY < child.getBottom()) {
+                return mRecyclerView.getChildPosition(child);
+            }
+        }
+        return ListView.INVALID_POSITION;
+    }
+
+    private void endReorder() {
+        View view = mReorderView;
+        mReorderView = null;
+        ViewCompat.setTranslationZ(view, 0);
+        if (view.getParent() != mRecyclerView) {
+            if (mIsVertical) {
+                view.setTranslationX(0);
+            } else {
+                view.setTranslationY(0);
+            }
+            return;
+        }
+        // Drop it into its slot
+        ViewPropertyAnimator animator = view.animate().setDuration(mAnimationTime);
+        if (mIsVertical) {
+            animator.translationX(0);
+        } else {
+            animator.translationY(0);
+        }
+    }
+
+    /**
+     * Whether the given swipe flags allow moving the item by the given translation.
+     */
+    private static boolean isSwipeAllowed(int flags, float translation) {
+        return (flags & (translation > 0 ? SWIPE_POSITIVE : SWIPE_NEGATIVE)) != 0;
+    }
+
+    /**
+     * Returns the {@code SWIPE_} flags of the item at the given position. Without a policy
+     * every swipe of the items accepted by canDismiss is allowed, otherwise the policy is only
+     * asked once until the item changes.
+     */
+    private int getSwipeFlags(int position) {
+        if (mSwipePolicy == null) {
+            return !canDismiss(position) ? 0
+                    : mRevealLayoutId != 0 ? SWIPE_DISMISS | SWIPE_REVEAL : SWIPE_DISMISS;
+        }
+        // Accessibility asks without any touch, the cached answers must follow the adapter anyway
+        observeAdapter();
+        RecyclerView.Adapter adapter = mRecyclerView.getAdapter();
+        if (adapter == null || position < 0) {
+            return 0;
+        }
+        long key = adapter.hasStableIds() ? adapter.getItemId(position) : position;
+        int flags = mSwipeFlagsCache.get(key);
+        if (flags == SwipeFlagsCache.MISSING) {
+            flags = mSwipePolicy.getSwipeFlags(position);
+            mSwipeFlagsCache.put(key, flags);
+        }
+        return flags;
+    }
+
+    /**
+     * Without stable ids the answers are cached by position, which any structural change shifts.
+     */
+    private void invalidatePositionedSwipeFlags() {
+        if (!mObservedAdapter.hasStableIds()) {
+            mSwipeFlagsCache.clear();
+        }
+    }
+
+    private boolean canDismiss(int position) {
+        if (mBatchCallbacks != null) {
+            return mBatchCallbacks.canDismiss(position);
+        }
+        return mCallbacks.canDismiss(position);
+    }
+
+    private void dispatchPendingDismisses() {
+        if (mPendingDismisses.isEmpty()) {
+            return;
+        }
+
+        if (mCommitExecutor != null) {
+            // The data source goes first, the adapter only follows once it is done. The items stay
+            // hidden in place meanwhile.
+            for (SwipeState pendingDismiss : mPendingDismisses) {
+                pendingDismiss.phase = PHASE_COMMITTING;
+            }
+            mQueuedCommits.addAll(mPendingDismisses);
+            mPendingDismisses.clear();
+            startBackgroundCommit();
+            return;
+        }
+
+        commitToAdapter(mPendingDismisses);
+    }
+
+    private void startBackgroundCommit() {
+        if (mRunningCommit != null || mQueuedCommits.isEmpty()) {
+            return;
+        }
+
+        CommitBatch batch = new CommitBatch(mQueuedCommits);
+        mQueuedCommits.clear();
+        int count = resolvePositions(batch.states);
+        batch.positions = new int[count];
+        batch.itemIds = new long[count];
+        for (int i = 0; i < count; i++) {
+            SwipeState state = batch.states.get(i);
+            batch.positions[i] = state.position;
+            batch.itemIds[i] = state.itemId;
+        }
+        mRunningCommit = batch;
+        mCommitExecutor.execute(batch);
+    }
+
+    private void onBackgroundCommitDone(CommitBatch batch) {
+        mRunningCommit = null;
+        if (batch.error == null) {
+            commitToAdapter(batch.states);
+        } else {
+            // Roll back, the items are still in the adapter
+            for (SwipeState state : batch.states) {
+                if (state.view != null) {
+                    restoreViewExtent(state);
+                }
+                restoreUndoable(state);
+            }
+            mDataSourceCallbacks.onRemoveFailed(batch.positions, batch.error);
+        }
+        startBackgroundCommit();
+    }
+
+    /**
+     * Resolves the positions of the given states and sorts them by descending position, the ones
+     * whose item is gone last.
+     *
+     * @return the number of states whose item is still in the adapter
+     */
+    private int resolvePositions(List<SwipeState> states) {
+        // Positions are only resolved now, adapter updates during the animation already moved them
+        int count = 0;
+        for (SwipeState state : states) {
+            resolvePosition(state);
+            if (state.position != ListView.INVALID_POSITION) {
+                count++;
+            }
+        }
+
+        // Sort by descending position
+        Collections.sort(states);
+        return count;
+    }
+
+    /**
+     * Removes the given dismissed items from the adapter through the dismiss callbacks and
+     * releases their states.
+     */
+    private void commitToAdapter(List<SwipeState> dismisses) {
+        int count = resolvePositions(dismisses);
+        // Checked before the callbacks, removing the item in onDismiss invalidates its position
+        for (int i = 0; i < dismisses.size(); i++) {
+            SwipeState pendingDismiss = dismisses.get(i);
+            pendingDismiss.boundAtCommit = pendingDismiss.view != null && isBoundTo(pendingDismiss);
+        }
+
+        if (count > 0 && mBatchCallbacks != null) {
+            int[] dismissPositions = new int[count];
+            for (int i = 0; i < count; i++) {
+                dismissPositions[i] = dismisses.get(i).position;
+            }
+            mBatchCallbacks.onDismiss(dismissPositions);
+        } else if (count > 0) {
+            // Descending order keeps the positions of the views not yet reported valid
+            for (int i = 0; i < count; i++) {
+                SwipeState pendingDismiss = dismisses.get(i);
+                if (pendingDismiss.view != null) {
+                    mCallbacks.onDismiss(pendingDismiss.view);
+                }
+            }
+        }
+
+        if (mMetricsListener != null && count > 0) {
+            long now = SystemClock.uptimeMillis();
+            boolean layoutFree = false;
+            for (int i = 0; i < count; i++) {
+                SwipeState pendingDismiss = dismisses.get(i);
+                mMetricsListener.onDismissCommitted(now - pendingDismiss.upTime);
+                layoutFree |= !pendingDismiss.collapseByLayout;
+            }
+            if (layoutFree) {
+                // The adapter's removal is animated by the ItemAnimator from the next layout
+                mWatchItemAnimator = true;
+                mItemAnimatorStarted = false;
+                mItemAnimatorStartFrames = ITEM_ANIMATOR_START_FRAMES;
+                startFrameMonitor();
+            }
+        }
+
+        for (SwipeState pendingDismiss : dismisses) {
+            View view = pendingDismiss.view;
+            if (view != null && (pendingDismiss.collapseByLayout || !pendingDismiss.boundAtCommit
+                    || isBoundTo(pendingDismiss))) {
+                // Rebound to another item, or kept by the callbacks: reset view presentation
+                resetViewPresentation(view);
+                restoreViewExtent(pendingDismiss);
+            }
+            // Otherwise the callbacks removed the item, leave its view flown out.
+            // RecyclerView's ItemAnimator then slides the neighbours with translations only, so no
+            // layout pass runs while the dismiss animates. The view is restored once RecyclerView
+            // detaches it.
+            releaseSwipeState(pendingDismiss);
+        }
+        dismisses.clear();
+
+        if (!mItemTouchMode && mActiveSwipe == null
+                && mRecyclerView.getScrollState() == RecyclerView.SCROLL_STATE_IDLE) {
+            // Send a cancel event, unless it would stop the list being dragged or flung
+            mRecyclerView.dispatchTouchEvent(obtainCancelEvent(0, 0));
+        }
+    }
+
+    private void startFrameMonitor() {
+        if (mFrameMonitor != null) {
+            mFrameMonitor.start();
+        }
+    }
+
+    private boolean isMetricsPhaseActive(int phase) {
+        if (phase == METRICS_PHASE_COLLAPSE && mWatchItemAnimator) {
+            RecyclerView.ItemAnimator itemAnimator = mRecyclerView.getItemAnimator();
+            if (itemAnimator != null && itemAnimator.isRunning()) {
+                mItemAnimatorStarted = true;
+                return true;
+            }
+            if (!mItemAnimatorStarted && mItemAnimatorStartFrames-- > 0) {
+                return true;
+            }
+            mWatchItemAnimator = false;
+        }
+
+        for (int i = mSwipeStates.size() - 1; i >= 0; i--) {
+            SwipeState state = mSwipeStates.valueAt(i);
+            if (phase == METRICS_PHASE_COLLAPSE ? state.phase == PHASE_COLLAPSING
+                    : state.swiping && (state.phase == PHASE_SWIPING || state.animating)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the view of the state still shows the dismissed item, it may have been rebound to
+     * another one when the adapter has stable ids.
+     */
+    private boolean isBoundTo(SwipeState state) {
+        return state.position != ListView.INVALID_POSITION && (state.itemId == RecyclerView.NO_ID
+                || mRecyclerView.getChildItemId(state.view) == state.itemId);
+    }
+
+    /**
+     * Whether the view was left faded or moved by a swipe.
+     */
+    private boolean isOutOfPlace(View view) {
+        return view.getAlpha() != 1f
+                || (mIsVertical ? view.getTranslationY() : view.getTranslationX()) != 0;
+    }
+
+    private void resetViewPresentation(View view) {
+        view.setAlpha(1f);
+        if (mIsVertical)
+            view.setTranslationY(0);
+        else
+            view.setTranslationX(0);
+    }
+
+    public interface DismissCallbacks {
+        boolean canDismiss(int position);
+
+        void onDismiss(View view);
+    }
+
+    /**
+     * Receives every item dismissed by a burst of swipes in a single call, so the adapter can be
+     * updated with notifyItemRemoved instead of rebinding every visible item.
+     */
+    public interface BatchDismissCallbacks {
+        boolean canDismiss(int position);
+
+        /**
+         * @param reverseSortedPositions adapter positions of the dismissed items, in descending
+         *                               order so they can be removed one after another
+         */
+        void onDismiss(int[] reverseSortedPositions);
+    }
+
+    public interface OnRevealActionCallBack {
+        /**
+         * @param position adapter position of the revealed item
+         * @param actionId id of the view tapped in the underlay layout
+         */
+        void onRevealAction(int position, int actionId);
+    }
+
+    public interface OnUndoBufferChangedCallBack {
+        /**
+         * @param undoableCount number of dismissed items that can still be restored with
+         *                      {@link SwipeDismissRecyclerViewTouchListener#undoLast()}
+         */
+        void onUndoBufferChanged(int undoableCount);
+    }
+
+    /**
+     * Receives measurements of the swipes, to be forwarded to telemetry. Frames are only
+     * counted on API 16 and above.
+     */
+    public interface SwipeMetricsListener {
+        /**
+         * @param latencyMillis time from ACTION_DOWN until the gesture was recognized as a swipe
+         */
+        void onSwipeRecognized(long latencyMillis);
+
+        /**
+         * @param dismissed true if the swipe dismisses the item, false if it was cancelled
+         */
+        void onSwipeEnded(boolean dismissed);
+
+        /**
+         * @param latencyMillis time from the ACTION_UP of the swipe until the item was passed
+         *                      to the dismiss callback
+         */
+        void onDismissCommitted(long latencyMillis);
+
+        /**
+         * @param phase      {@link #METRICS_PHASE_TRANSLATE} or {@link #METRICS_PHASE_COLLAPSE}
+         * @param frameCount frames rendered while the phase was running
+         * @param jankyFrameCount frames which took longer than one and a half vsync
+         */
+        void onAnimationFrames(int phase, int frameCount, int jankyFrameCount);
+
+        /**
+         * Only called when touch prediction is on.
+         *
+         * @param errorPixels how far the predicted drag position was from the finger along the
+         *                    swipe axis, positive when it led too much
+         */
+        void onPredictionError(float errorPixels);
+    }
+
+    /**
+     * Told about the item which will scroll into view if the item being swiped is dismissed, as
+     * soon as the swipe goes past the dismiss distance, so its data and images can be loaded
+     * before it is bound.
+     */
+    public interface OnPrefetchCallBack {
+        void onPrefetch(int position);
+    }
+
+    /**
+     * Removes dismissed items from the data source off the UI thread, before they are passed to
+     * the dismiss callbacks to be removed from the adapter.
+     */
+    public interface DataSourceCallbacks {
+        /**
+         * Called on the commit executor with every item dismissed since the previous call, to be
+         * removed in a single transaction. The items stay hidden in place until it returns.
+         *
+         * @param reverseSortedPositions positions of the items, in descending order
+         * @param itemIds                stable ids of the items, or RecyclerView.NO_ID
+         * @throws Exception to bring the items back instead of removing them from the adapter
+         */
+        void onRemove(int[] reverseSortedPositions, long[] itemIds) throws Exception;
+
+        /**
+         * Called on the UI thread when {@link #onRemove} threw an exception or an error, once
+         * the items are back.
+         */
+        void onRemoveFailed(int[] reverseSortedPositions, Throwable error);
+    }
+
+    /**
+     * Decides which way each item can be swiped and what it does, in place of canDismiss. Its
+     * answers are cached until the adapter notifies a change of the item.
+     */
+    public interface SwipePolicy {
+        /**
+         * @return a combination of {@link #SWIPE_DISMISS_NEGATIVE}, {@link #SWIPE_DISMISS_POSITIVE},
+         * {@link #SWIPE_REVEAL_NEGATIVE} and {@link #SWIPE_REVEAL_POSITIVE}, 0 if the item can't
+         * be swiped
+         */
+        int getSwipeFlags(int position);
+    }
+
+    /**
+     * Reorders items dragged after a long press.
+     */
+    public interface OnItemMoveCallBack {
+        boolean canMove(int position);
+
+        /**
+         * Move the item in the data set and call notifyItemMoved(fromPosition, toPosition). It's
+         * called at most once per frame, passing over every item the dragged one went past since.
+         */
+        void onItemMove(int fromPosition, int toPosition);
+    }
+
+    public interface OnItemTouchCallBack {
+        void onTouch(int position);
+    }
+
+    public interface OnItemClickCallBack {
+        void onClick(int position);
+    }
+
+    public interface OnItemLongClickCallBack {
+        /**
+         * @return whether the long click was handled, if not a long press still starts a reorder
+         * when {@link OnItemMoveCallBack} is set
+         */
+        boolean onLongClick(int position);
+    }
+
+    static public class Builder {
+        private RecyclerView mRecyclerView;
+        private DismissCallbacks mCallbacks;
+        private BatchDismissCallbacks mBatchCallbacks;
+
+        private OnItemTouchCallBack mItemTouchCallback = null;
+        private OnItemClickCallBack mItemClickCallback = null;
+        private OnItemLongClickCallBack mItemLongClickCallback = null;
+        private boolean mIsVertical = false;
+        private int mBackgroundPressId;
+        private int mBackgroundNormalId;
+        private boolean mCollapseByLayout = false;
+        private boolean mUseHardwareLayer = false;
+        private boolean mFadeOnSwipe = true;
+        private int mRevealLayoutId;
+        private int mRevealOffset;
+        private OnRevealActionCallBack mRevealActionCallback;
+        private long mUndoWindow;
+        private int mUndoMaxSize;
+        private OnUndoBufferChangedCallBack mUndoCallback;
+        private SwipeMetricsListener mMetricsListener;
+        private long mPredictionMillis;
+        private boolean mUsePhysics = false;
+        private boolean mPrefetchViews = false;
+        private OnPrefetchCallBack mPrefetchCallback;
+        private Executor mCommitExecutor;
+        private DataSourceCallbacks mDataSourceCallbacks;
+        private SwipePolicy mSwipePolicy;
+        private OnItemMoveCallBack mMoveCallback;
+        private boolean mReducedMotion = false;
+        private boolean mAccessibilityActions = false;
+        private SwipeDecisionEngine.Thresholds mThresholds = new SwipeDecisionEngine.Thresholds();
+
+        public Builder(RecyclerView recyclerView, DismissCallbacks callbacks) {
+            mRecyclerView = recyclerView;
+            mCallbacks = callbacks;
+        }
+
+        public Builder(RecyclerView recyclerView, BatchDismissCallbacks callbacks) {
+            mRecyclerView = recyclerView;
+            mBatchCallbacks = callbacks;
+        }
+
+        public Builder setIsVertical(boolean isVertical) {
+            mIsVertical = isVertical;
+            return this;
+        }
+
+        public Builder setItemTouchCallback(OnItemTouchCallBack callBack) {
+            mItemTouchCallback = callBack;
+            return this;
+        }
+
+        public Builder setItemClickCallback(OnItemClickCallBack callBack) {
+            mItemClickCallback = callBack;
+            return this;
+        }
+
+        public Builder setItemLongClickCallback(OnItemLongClickCallBack callBack) {
+            mItemLongClickCallback = callBack;
+            return this;
         }
 
         public Builder setBackgroundId(int backgroundNormalId, int backgroundPressId) {
@@ -491,6 +2261,169 @@ public class SwipeDismissRecyclerViewTouchListener implements View.OnTouchListen
             return this;
         }
 
+        /**
+         * Collapse dismissed items by animating their height (width when vertical) before the
+         * dismiss callback is called. This relayouts the RecyclerView on every frame, by default
+         * the item is removed right after it flies out and the adapter's notifyItemRemoved lets
+         * the ItemAnimator move the other items. Tiles of a grid which don't span all its columns
+         * are never collapsed by layout.
+         */
+        public Builder setCollapseByLayout(boolean collapseByLayout) {
+            mCollapseByLayout = collapseByLayout;
+            return this;
+        }
+
+        /**
+         * Render the swiped item on a hardware layer from the start of the swipe until its
+         * animation ends, so fading it doesn't redraw a complex item offscreen on every frame.
+         * Has no effect when the fade is disabled.
+         */
+        public Builder setUseHardwareLayer(boolean useHardwareLayer) {
+            mUseHardwareLayer = useHardwareLayer;
+            return this;
+        }
+
+        /**
+         * Fade the item out while it is swiped, enabled by default. Opaque items can disable it
+         * to be only translated, which needs no offscreen composition at all.
+         */
+        public Builder setFadeOnSwipe(boolean fadeOnSwipe) {
+            mFadeOnSwipe = fadeOnSwipe;
+            return this;
+        }
+
+        /**
+         * Let a partial swipe stop at revealOffset pixels, exposing the underlayLayoutId layout
+         * drawn behind the item. Tapping one of its views calls the callback with the view's id.
+         * Underlays are inflated on the first swipe and pooled, swiping further than half the
+         * width still dismisses the item.
+         */
+        public Builder setRevealActions(int underlayLayoutId, int revealOffset,
+                                        OnRevealActionCallBack callBack) {
+            mRevealLayoutId = underlayLayoutId;
+            mRevealOffset = revealOffset;
+            mRevealActionCallback = callBack;
+            return this;
+        }
+
+        /**
+         * Keep dismissed items hidden in place instead of committing them right away. They can be
+         * brought back with {@link SwipeDismissRecyclerViewTouchListener#undoLast()} and are
+         * committed in one batch windowMillis after the last dismiss, or as soon as more than
+         * maxSize items wait.
+         *
+         * @param callBack notified when the number of undoable items changes, may be null
+         */
+        public Builder setUndoBuffer(long windowMillis, int maxSize,
+                                     OnUndoBufferChangedCallBack callBack) {
+            mUndoWindow = windowMillis;
+            mUndoMaxSize = maxSize;
+            mUndoCallback = callBack;
+            return this;
+        }
+
+        /**
+         * Overrides the slop, dismiss distance and fling velocities deciding a swipe, the
+         * thresholds left unset keep the system defaults.
+         */
+        public Builder setThresholds(SwipeDecisionEngine.Thresholds thresholds) {
+            mThresholds = thresholds;
+            return this;
+        }
+
+        /**
+         * Leads the dragged item by where the finger is predicted to be when the frame is shown,
+         * extrapolated from the recent touch samples.
+         *
+         * @param predictionMillis how far ahead to predict, typically one or two frames. 0, the
+         *                         default, turns prediction off
+         */
+        public Builder setTouchPrediction(long predictionMillis) {
+            mPredictionMillis = predictionMillis;
+            return this;
+        }
+
+        /**
+         * End swipes with physics instead of fixed duration animations: released items keep
+         * their velocity, dismissed ones fly out until they leave the list and the others spring
+         * back in place or to the reveal offset.
+         */
+        public Builder setPhysicsAnimation(boolean usePhysics) {
+            mUsePhysics = usePhysics;
+            return this;
+        }
+
+        /**
+         * Prepares the item which scrolls into view when the swiped item is dismissed, as soon as
+         * the swipe goes past the dismiss distance.
+         *
+         * @param prefetchViews whether to create a view holder for it in the RecycledViewPool
+         *                      while the UI thread is idle
+         * @param callback      told the position of the item, may be null
+         */
+        public Builder setPrefetch(boolean prefetchViews, OnPrefetchCallBack callback) {
+            mPrefetchViews = prefetchViews;
+            mPrefetchCallback = callback;
+            return this;
+        }
+
+        /**
+         * Removes dismissed items from the data source on the given executor first, batching
+         * the items dismissed while a removal runs. The dismiss callbacks are only called once it
+         * succeeded, a failed removal brings the items back. It needs BatchDismissCallbacks, the
+         * items may have been scrolled away by the time the removal is done.
+         */
+        public Builder setCommitExecutor(Executor executor, DataSourceCallbacks callbacks) {
+            mCommitExecutor = executor;
+            mDataSourceCallbacks = callbacks;
+            return this;
+        }
+
+        /**
+         * Lets a policy decide the directions each item can be swiped in and whether swiping it
+         * dismisses it or reveals its actions, instead of canDismiss. Use
+         * {@link SwipeDecisionEngine.Thresholds#setDismissFractions} for a different dismiss
+         * distance per direction.
+         */
+        public Builder setSwipePolicy(SwipePolicy policy) {
+            mSwipePolicy = policy;
+            return this;
+        }
+
+        /**
+         * Lets items be dragged along the list after a long press to reorder them. Dragging an
+         * item near an edge of the list scrolls it.
+         */
+        public Builder setItemMoveCallback(OnItemMoveCallBack callback) {
+            mMoveCallback = callback;
+            return this;
+        }
+
+        /**
+         * Dismisses through {@link #dismiss(int)}, {@link #dismissAll(int[])} and the
+         * accessibility action skip the fly out and collapse animations.
+         */
+        public Builder setReducedMotion(boolean reducedMotion) {
+            mReducedMotion = reducedMotion;
+            return this;
+        }
+
+        /**
+         * Gives the items which can be dismissed a dismiss accessibility action, for TalkBack and
+         * switch access users, and lets keyboard users dismiss a focused item with delete or
+         * forward delete. It replaces any accessibility delegate and key listener set on the item
+         * views.
+         */
+        public Builder setAccessibilityActions(boolean enabled) {
+            mAccessibilityActions = enabled;
+            return this;
+        }
+
+        public Builder setMetricsListener(SwipeMetricsListener listener) {
+            mMetricsListener = listener;
+            return this;
+        }
+
         public SwipeDismissRecyclerViewTouchListener create() {
             return new SwipeDismissRecyclerViewTouchListener(this);
         }
@@ -498,47 +2431,244 @@ public class SwipeDismissRecyclerViewTouchListener implements View.OnTouchListen
 
     }
 
-    class PendingDismissData implements Comparable<PendingDismissData> {
-        public int position;
-        public View view;
+    /**
+     * Draws the underlay of the swiped items below them, the underlays are never attached to the
+     * RecyclerView.
+     */
+    private class RevealDecoration extends RecyclerView.ItemDecoration {
+        @Override
+        public void onDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
+            for (int i = mSwipeStates.size() - 1; i >= 0; i--) {
+                SwipeState swipe = mSwipeStates.valueAt(i);
+                View view = swipe.view;
+                View underlay = swipe.underlay;
+                if (view == null || underlay == null) {
+                    continue;
+                }
+
+                int width = view.getWidth();
+                int height = view.getHeight();
+                if (underlay.getWidth() != width || underlay.getHeight() != height) {
+                    underlay.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                            View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+                    underlay.layout(0, 0, width, height);
+                }
+
+                int saveCount = c.save();
+                c.translate(view.getLeft(), view.getTop());
+                c.clipRect(0, 0, width, height);
+                underlay.draw(c);
+                c.restoreToCount(saveCount);
+            }
+        }
+    }
+
+    /**
+     * Gives every item the dismiss accessibility action and delete key. RecyclerView has no
+     * callback for the children it adds, but asks the decorations for the offsets of each of them.
+     */
+    private class AccessibilityDecoration extends RecyclerView.ItemDecoration {
+        @Override
+        public void getItemOffsets(Rect outRect, View view, RecyclerView parent, RecyclerView.State state) {
+            outRect.set(0, 0, 0, 0);
+            ViewCompat.setAccessibilityDelegate(view, mAccessibilityDelegate);
+            view.setOnKeyListener(mDismissKeyListener);
+        }
+    }
+
+    private class DismissAccessibilityDelegate extends AccessibilityDelegateCompat {
+        private final AccessibilityNodeInfoCompat.AccessibilityActionCompat mDismissAction;
+
+        DismissAccessibilityDelegate(CharSequence label) {
+            mDismissAction = new AccessibilityNodeInfoCompat.AccessibilityActionCompat(
+                    R.id.swipe_dismiss_action_dismiss, label);
+        }
+
+        @Override
+        public void onInitializeAccessibilityNodeInfo(View host, AccessibilityNodeInfoCompat info) {
+            super.onInitializeAccessibilityNodeInfo(host, info);
+            int position = mRecyclerView.getChildPosition(host);
+            if (!mPaused && position != RecyclerView.NO_POSITION
+                    && (getSwipeFlags(position) & SWIPE_DISMISS) != 0) {
+                info.addAction(mDismissAction);
+            }
+        }
+
+        @Override
+        public boolean performAccessibilityAction(View host, int action, Bundle args) {
+            if (action == R.id.swipe_dismiss_action_dismiss) {
+                int position = mRecyclerView.getChildPosition(host);
+                return !mPaused && position != RecyclerView.NO_POSITION && dismiss(position);
+            }
+            return super.performAccessibilityAction(host, action, args);
+        }
+    }
+
+    /**
+     * Removes a batch of dismissed items from the data source on the commit executor, then hands
+     * them back to the UI thread.
+     */
+    private class CommitBatch implements Runnable {
+        final List<SwipeState> states;
+        int[] positions;
+        long[] itemIds;
+        Throwable error;
+        private boolean mRemoved;
+
+        CommitBatch(List<SwipeState> states) {
+            this.states = new ArrayList<SwipeState>(states);
+        }
+
+        @Override
+        public void run() {
+            if (!mRemoved) {
+                // On the executor
+                try {
+                    mDataSourceCallbacks.onRemove(positions, itemIds);
+                } catch (Throwable e) {
+                    error = e;
+                } finally {
+                    // Whatever happened, the UI thread must learn the batch is over or every
+                    // later dismiss would wait for it
+                    mRemoved = true;
+                    mMainHandler.post(this);
+                }
+            } else {
+                onBackgroundCommitDone(this);
+            }
+        }
+    }
+
+    private class SwipeState extends AnimatorListenerAdapter
+            implements ValueAnimator.AnimatorUpdateListener, Comparable<SwipeState> {
+        long key;
+        long itemId;
+        View view;
+        int position;
+        int phase;
+        float downX;
+        float downY;
+        boolean swiping;
+        // Dismissed without animations
+        boolean immediate;
+        int layerType;
+        float startTranslation;
+        View underlay;
+        boolean animating;
+        long upTime;
+        // Resolved from the layout when the swipe starts
+        boolean collapseByLayout;
+        float extent;
+        boolean prefetched;
+        int flags;
+        int originalExtent;
+        ValueAnimator collapseAnimator;
+        // Kept from being recycled while a detached view waits for DismissCallbacks
+        RecyclerView.ViewHolder heldViewHolder;
+        // Whether the view still showed the item when the dismiss callbacks were called
+        boolean boundAtCommit;
+        final SwipePhysics physics = new SwipePhysics();
 
-        public PendingDismissData(int position, View view) {
-            this.position = position;
-            this.view = view;
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            onSwipeAnimationEnd();
+        }
+
+        void onSwipeAnimationEnd() {
+            animating = false;
+            if (phase == PHASE_DISMISSING) {
+                // Detach from the view's animator, the state is reused once committed
+                if (view != null) {
+                    view.animate().setListener(null);
+                }
+                onDismissAnimationEnd(this);
+            } else if (phase == PHASE_COLLAPSING) {
+                onDismissAnimationEnd(this);
+            } else if (phase == PHASE_SETTLING) {
+                // Back in place
+                view.animate().setListener(null);
+                releaseSwipeState(this);
+            } else if (phase == PHASE_REVEALED) {
+                view.animate().setListener(null);
+            }
         }
 
         @Override
-        public int compareTo(PendingDismissData other) {
+        public void onAnimationUpdate(ValueAnimator valueAnimator) {
+            ViewGroup.LayoutParams lp = view.getLayoutParams();
+            if (mIsVertical)
+                lp.width = (Integer) valueAnimator.getAnimatedValue();
+            else
+                lp.height = (Integer) valueAnimator.getAnimatedValue();
+            view.setLayoutParams(lp);
+        }
+
+        @Override
+        public int compareTo(SwipeState other) {
             // Sort by descending position
             return other.position - position;
         }
     }
 
+    // Raw coordinates are only given for the first pointer, the others share its offset
+    private static float getRawX(MotionEvent motionEvent, int pointerIndex) {
+        return motionEvent.getX(pointerIndex) + motionEvent.getRawX() - motionEvent.getX();
+    }
+
+    private static float getRawY(MotionEvent motionEvent, int pointerIndex) {
+        return motionEvent.getY(pointerIndex) + motionEvent.getRawY() - motionEvent.getY();
+    }
+
     private float distance(float x1, float y1, float x2, float y2) {
         float dx = x1 - x2;
         float dy = y1 - y2;
         return (float) Math.sqrt(dx * dx + dy * dy);
     }
 
-    private void updateItemBackground(final View mDownView, MotionEvent motionEvent) {
-        if (mBackgroundPressId == 0 || mBackgroundNormalId == 0 || mDownView == null) {
+    private void cancelRecyclerViewTouch(MotionEvent motionEvent) {
+        if (mItemTouchMode) {
+            // RecyclerView cancels its touch itself once onInterceptTouchEvent claims the gesture
+            return;
+        }
+
+        // Cancel ListView's touch (un-highlighting the item)
+        MotionEvent cancelEvent = obtainCancelEvent(motionEvent.getX(), motionEvent.getY());
+        cancelEvent.setAction(MotionEvent.ACTION_CANCEL |
+                (motionEvent.getActionIndex()
+                        << MotionEvent.ACTION_POINTER_INDEX_SHIFT));
+        mRecyclerView.onTouchEvent(cancelEvent);
+    }
+
+    /**
+     * Returns the shared cancel event moved to (x, y). Its action is always ACTION_CANCEL.
+     */
+    private MotionEvent obtainCancelEvent(float x, float y) {
+        if (mCancelEvent == null) {
+            long time = SystemClock.uptimeMillis();
+            mCancelEvent = MotionEvent.obtain(time, time, MotionEvent.ACTION_CANCEL, x, y, 0);
+        } else {
+            mCancelEvent.setAction(MotionEvent.ACTION_CANCEL);
+            mCancelEvent.setLocation(x, y);
+        }
+        return mCancelEvent;
+    }
+
+    private void updateItemBackground(View downView, MotionEvent motionEvent) {
+        if (mBackgroundPressId == 0 || mBackgroundNormalId == 0 || downView == null) {
             return;
         }
 
         switch (motionEvent.getActionMasked()) {
             case MotionEvent.ACTION_DOWN:
-                mRecyclerView.postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        if (!hasMoveAfterDown) {
-                            mDownView.setBackgroundResource(mBackgroundPressId);
-                        }
-                    }
-                }, ViewConfiguration.getTapTimeout());
+                mRecyclerView.removeCallbacks(mPressRunnable);
+                mPressedView = downView;
+                mRecyclerView.postDelayed(mPressRunnable, ViewConfiguration.getTapTimeout());
                 break;
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_CANCEL:
-                mDownView.setBackgroundResource(mBackgroundNormalId);
+                mRecyclerView.removeCallbacks(mPressRunnable);
+                mPressedView = null;
+                downView.setBackgroundResource(mBackgroundNormalId);
                 break;
             default:
                 break;
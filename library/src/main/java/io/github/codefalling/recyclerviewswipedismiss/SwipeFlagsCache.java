@@ -0,0 +1,87 @@
+package io.github.codefalling.recyclerviewswipedismiss;
+
+/**
+ * The answers of the swipe policy, keyed by stable id or by position. Keys and flags are kept in
+ * sorted primitive arrays, so a lookup never boxes and only a put which outgrows the arrays
+ * allocates.
+ */
+class SwipeFlagsCache {
+    static final int MISSING = -1;
+
+    private long[] mKeys;
+    private int[] mFlags;
+    private int mSize;
+
+    SwipeFlagsCache(int initialCapacity) {
+        mKeys = new long[initialCapacity];
+        mFlags = new int[initialCapacity];
+    }
+
+    /**
+     * @return the flags cached for the key, or {@link #MISSING}
+     */
+    int get(long key) {
+        int index = indexOf(key);
+        return index >= 0 ? mFlags[index] : MISSING;
+    }
+
+    void put(long key, int flags) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            mFlags[index] = flags;
+            return;
+        }
+        index = ~index;
+        if (mSize == mKeys.length) {
+            long[] keys = new long[mSize * 2];
+            int[] allFlags = new int[mSize * 2];
+            System.arraycopy(mKeys, 0, keys, 0, mSize);
+            System.arraycopy(mFlags, 0, allFlags, 0, mSize);
+            mKeys = keys;
+            mFlags = allFlags;
+        }
+        System.arraycopy(mKeys, index, mKeys, index + 1, mSize - index);
+        System.arraycopy(mFlags, index, mFlags, index + 1, mSize - index);
+        mKeys[index] = key;
+        mFlags[index] = flags;
+        mSize++;
+    }
+
+    void remove(long key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return;
+        }
+        System.arraycopy(mKeys, index + 1, mKeys, index, mSize - index - 1);
+        System.arraycopy(mFlags, index + 1, mFlags, index, mSize - index - 1);
+        mSize--;
+    }
+
+    void clear() {
+        mSize = 0;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the index of the key, or the bitwise complement of where it would be inserted
+     */
+    private int indexOf(long key) {
+        int low = 0;
+        int high = mSize - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleKey = mKeys[middle];
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return ~low;
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.codefalling.recyclerviewswipedismiss;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.View;
+import android.view.WindowManager;
+
+/**
+ * Counts the frames, and the janky ones, rendered while a swipe animation phase is running. It
+ * only runs while a phase is active and is only created when a metrics listener is set.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+class SwipeFrameMonitor implements Choreographer.FrameCallback {
+    static final int PHASE_COUNT = 2;
+
+    private static final float DEFAULT_REFRESH_RATE = 60;
+
+    interface PhaseSource {
+        boolean isPhaseActive(int phase);
+    }
+
+    private final Choreographer mChoreographer = Choreographer.getInstance();
+    private final PhaseSource mSource;
+    private final SwipeDismissRecyclerViewTouchListener.SwipeMetricsListener mListener;
+    private final View mView;
+    private long mJankThresholdNanos;
+
+    private final boolean[] mActive = new boolean[PHASE_COUNT];
+    private final int[] mFrames = new int[PHASE_COUNT];
+    private final int[] mJankyFrames = new int[PHASE_COUNT];
+    private long mLastFrameTimeNanos;
+    private boolean mRunning;
+
+    /**
+     * @param view the frames of the display showing this view are counted
+     */
+    SwipeFrameMonitor(PhaseSource source,
+                      SwipeDismissRecyclerViewTouchListener.SwipeMetricsListener listener,
+                      View view) {
+        mSource = source;
+        mListener = listener;
+        mView = view;
+    }
+
+    /**
+     * Starts counting frames if it isn't already, it stops by itself once no phase is active.
+     */
+    void start() {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+        mLastFrameTimeNanos = 0;
+        // A frame taking more than one and a half vsync missed at least one. The display may have
+        // changed since the last run, or its refresh rate with it.
+        mJankThresholdNanos = (long) (1000000000L / getRefreshRate()) * 3 / 2;
+        mChoreographer.postFrameCallback(this);
+    }
+
+    private float getRefreshRate() {
+        Display display = null;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            display = mView.getDisplay();
+        }
+        if (display == null) {
+            // Not attached yet
+            WindowManager windowManager = (WindowManager) mView.getContext()
+                    .getSystemService(Context.WINDOW_SERVICE);
+            display = windowManager.getDefaultDisplay();
+        }
+        float refreshRate = display.getRefreshRate();
+        return refreshRate >= 1 ? refreshRate : DEFAULT_REFRESH_RATE;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        boolean janky = mLastFrameTimeNanos != 0
+                && frameTimeNanos - mLastFrameTimeNanos > mJankThresholdNanos;
+        mLastFrameTimeNanos = frameTimeNanos;
+
+        boolean anyActive = false;
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            if (mSource.isPhaseActive(phase)) {
+                anyActive = true;
+                mActive[phase] = true;
+                mFrames[phase]++;
+                if (janky) {
+                    mJankyFrames[phase]++;
+                }
+            } else if (mActive[phase]) {
+                mActive[phase] = false;
+                mListener.onAnimationFrames(phase, mFrames[phase], mJankyFrames[phase]);
+                mFrames[phase] = 0;
+                mJankyFrames[phase] = 0;
+            }
+        }
+
+        if (anyActive) {
+            mChoreographer.postFrameCallback(this);
+        } else {
+            mRunning = false;
+        }
+    }
+}
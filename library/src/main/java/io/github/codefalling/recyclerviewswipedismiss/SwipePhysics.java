@@ -0,0 +1,99 @@
+package io.github.codefalling.recyclerviewswipedismiss;
+
+/**
+ * Moves a swiped item on from its release velocity: a spring pulls it back in place or to the
+ * reveal offset, a fling carries it out until it leaves the list. Stepping it only updates
+ * primitive fields, nothing is allocated per frame.
+ */
+class SwipePhysics {
+    static final int MODE_IDLE = 0;
+    static final int MODE_SPRING = 1;
+    static final int MODE_FLING = 2;
+    // Reached its end on the last step, waiting for the listener to finish the swipe
+    static final int MODE_FINISHED = 3;
+
+    private static final float STIFFNESS = 1500f;
+    private static final float DAMPING_RATIO = 1f;
+    private static final float DAMPING = 2 * DAMPING_RATIO * (float) Math.sqrt(STIFFNESS);
+    // Larger steps make the spring unstable, a long frame is integrated in several steps
+    private static final float MAX_STEP_SECONDS = 0.004f;
+    // A stall longer than this doesn't make the item jump
+    private static final long MAX_FRAME_MILLIS = 50;
+    private static final float REST_DISTANCE = 0.5f;
+    private static final float REST_VELOCITY = 10f;
+
+    int mode = MODE_IDLE;
+    float position;
+    // In pixels per second
+    float velocity;
+    private float mTarget;
+    private long mLastFrameTime;
+
+    /**
+     * Springs from the given position and velocity to the target.
+     */
+    void startSpring(float position, float velocity, float target, long timeMillis) {
+        mode = MODE_SPRING;
+        this.position = position;
+        this.velocity = velocity;
+        mTarget = target;
+        mLastFrameTime = timeMillis;
+    }
+
+    /**
+     * Keeps the given velocity, at least minSpeed towards the limit, until the position passes the
+     * limit.
+     */
+    void startFling(float position, float velocity, float minSpeed, float limit, long timeMillis) {
+        mode = MODE_FLING;
+        this.position = position;
+        this.velocity = limit > position ? Math.max(velocity, minSpeed) : Math.min(velocity, -minSpeed);
+        mTarget = limit;
+        mLastFrameTime = timeMillis;
+    }
+
+    void stop() {
+        mode = MODE_IDLE;
+    }
+
+    boolean isRunning() {
+        return mode == MODE_SPRING || mode == MODE_FLING;
+    }
+
+    /**
+     * Advances the motion to the given time.
+     *
+     * @return whether the motion reached its end with this step
+     */
+    boolean step(long timeMillis) {
+        float seconds = Math.min(timeMillis - mLastFrameTime, MAX_FRAME_MILLIS) / 1000f;
+        mLastFrameTime = timeMillis;
+        if (seconds <= 0) {
+            return false;
+        }
+
+        if (mode == MODE_FLING) {
+            position += velocity * seconds;
+            if (velocity > 0 ? position >= mTarget : position <= mTarget) {
+                position = mTarget;
+                mode = MODE_FINISHED;
+                return true;
+            }
+            return false;
+        }
+
+        while (seconds > 0) {
+            float dt = Math.min(seconds, MAX_STEP_SECONDS);
+            seconds -= dt;
+            velocity += (-STIFFNESS * (position - mTarget) - DAMPING * velocity) * dt;
+            position += velocity * dt;
+        }
+        if (Math.abs(position - mTarget) < REST_DISTANCE && Math.abs(velocity) < REST_VELOCITY) {
+            position = mTarget;
+            velocity = 0;
+            mode = MODE_FINISHED;
+            return true;
+        }
+        return false;
+    }
+}
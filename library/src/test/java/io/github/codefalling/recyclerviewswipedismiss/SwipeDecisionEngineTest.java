@@ -0,0 +1,208 @@
+package io.github.codefalling.recyclerviewswipedismiss;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SwipeDecisionEngineTest {
+    private static final float SLOP = 24;
+    private static final float EXTENT = 1000;
+
+    private static SwipeDecisionEngine newEngine(SwipeDecisionEngine.Thresholds thresholds) {
+        return new SwipeDecisionEngine(false, thresholds.resolve(SLOP, 800, 8000, 50));
+    }
+
+    private static SwipeDecisionEngine newEngine() {
+        return newEngine(new SwipeDecisionEngine.Thresholds());
+    }
+
+    /**
+     * Starts a gesture at x = 0 and moves along x at the given speed, one sample every 8ms.
+     */
+    private static void drag(SwipeDecisionEngine engine, float pixelsPerMilli, long durationMillis) {
+        engine.reset(0, 0, 0);
+        for (long time = 8; time <= durationMillis; time += 8) {
+            engine.addSample(pixelsPerMilli * time, 0, time);
+        }
+    }
+
+    @Test
+    public void decideDismissesPastTheDistanceWithoutVelocity() {
+        SwipeDecisionEngine engine = newEngine();
+        engine.reset(0, 0, 0);
+        engine.addSample(600, 0, 400);
+        engine.addSample(600, 0, 500);
+        engine.computeVelocity();
+
+        assertEquals(SwipeDecisionEngine.DECISION_DISMISS_POSITIVE, engine.decide(600, 0, EXTENT));
+        assertEquals(SwipeDecisionEngine.DECISION_DISMISS_NEGATIVE, engine.decide(-600, 0, EXTENT));
+        assertEquals(SwipeDecisionEngine.DECISION_SETTLE, engine.decide(300, 0, EXTENT));
+    }
+
+    @Test
+    public void decideDismissesAFlingShortOfTheDistance() {
+        SwipeDecisionEngine engine = newEngine();
+        drag(engine, 3, 80);
+        engine.computeVelocity();
+
+        assertEquals(SwipeDecisionEngine.DECISION_DISMISS_POSITIVE, engine.decide(240, 0, EXTENT));
+    }
+
+    @Test
+    public void decideSettlesAFlingAgainstTheDrag() {
+        SwipeDecisionEngine engine = newEngine();
+        drag(engine, -3, 80);
+        engine.computeVelocity();
+
+        // Dragged right, then flung back left before the release
+        assertEquals(SwipeDecisionEngine.DECISION_SETTLE, engine.decide(100, 0, EXTENT));
+        assertEquals(SwipeDecisionEngine.DECISION_DISMISS_NEGATIVE, engine.decide(-100, 0, EXTENT));
+    }
+
+    @Test
+    public void decideIgnoresFlingsOutsideTheVelocityRange() {
+        SwipeDecisionEngine engine = newEngine();
+        drag(engine, 0.5f, 80);
+        engine.computeVelocity();
+        assertEquals(SwipeDecisionEngine.DECISION_SETTLE, engine.decide(40, 0, EXTENT));
+
+        drag(engine, 12, 40);
+        engine.computeVelocity();
+        assertEquals(SwipeDecisionEngine.DECISION_SETTLE, engine.decide(400, 0, EXTENT));
+    }
+
+    @Test
+    public void decideUsesTheFractionOfEachDirection() {
+        SwipeDecisionEngine engine = newEngine(new SwipeDecisionEngine.Thresholds()
+                .setDismissFractions(0.2f, 0.8f));
+        engine.reset(0, 0, 0);
+        engine.computeVelocity();
+
+        assertTrue(engine.isPastDismissThreshold(-300, EXTENT));
+        assertFalse(engine.isPastDismissThreshold(300, EXTENT));
+        assertEquals(SwipeDecisionEngine.DECISION_DISMISS_NEGATIVE, engine.decide(-300, 0, EXTENT));
+        assertEquals(SwipeDecisionEngine.DECISION_SETTLE, engine.decide(700, 0, EXTENT));
+        assertEquals(SwipeDecisionEngine.DECISION_DISMISS_POSITIVE, engine.decide(900, 0, EXTENT));
+    }
+
+    @Test
+    public void lockAxisDecidesPastTheSlopFromTheDisplacement() {
+        SwipeDecisionEngine engine = newEngine();
+        engine.reset(0, 0, 0);
+
+        assertEquals(SwipeDecisionEngine.AXIS_SWIPE, engine.lockAxis(30, 2));
+        assertEquals(SwipeDecisionEngine.AXIS_SCROLL, engine.lockAxis(2, -30));
+        assertEquals(SwipeDecisionEngine.AXIS_UNDECIDED, engine.lockAxis(30, 30));
+        assertEquals(SwipeDecisionEngine.AXIS_UNDECIDED, engine.lockAxis(5, 1));
+    }
+
+    @Test
+    public void lockAxisLocksEarlyFromTheVelocity() {
+        SwipeDecisionEngine engine = newEngine();
+        engine.reset(0, 0, 0);
+        engine.addSample(6, 0, 8);
+        engine.addSample(13, 1, 16);
+        assertEquals(SwipeDecisionEngine.AXIS_SWIPE, engine.lockAxis(13, 1));
+
+        engine.reset(0, 0, 0);
+        engine.addSample(0, -6, 8);
+        engine.addSample(1, -13, 16);
+        assertEquals(SwipeDecisionEngine.AXIS_SCROLL, engine.lockAxis(1, -13));
+    }
+
+    @Test
+    public void lockAxisWaitsForEnoughSamplesAndDistance() {
+        SwipeDecisionEngine engine = newEngine();
+        engine.reset(0, 0, 0);
+        engine.addSample(13, 0, 8);
+        assertEquals(SwipeDecisionEngine.AXIS_UNDECIDED, engine.lockAxis(13, 0));
+
+        engine.reset(0, 0, 0);
+        engine.addSample(4, 0, 8);
+        engine.addSample(8, 0, 16);
+        assertEquals(SwipeDecisionEngine.AXIS_UNDECIDED, engine.lockAxis(8, 0));
+    }
+
+    @Test
+    public void lockAxisDoesntLockEarlyWhenDisabled() {
+        SwipeDecisionEngine engine = newEngine(new SwipeDecisionEngine.Thresholds()
+                .setEarlyAxisLock(0, 0, 0));
+        engine.reset(0, 0, 0);
+        engine.addSample(6, 0, 8);
+        engine.addSample(13, 0, 16);
+        assertEquals(SwipeDecisionEngine.AXIS_UNDECIDED, engine.lockAxis(13, 0));
+    }
+
+    @Test
+    public void computeVelocityOnlyUsesTheLastSamples() {
+        SwipeDecisionEngine engine = newEngine();
+        engine.reset(0, 0, 0);
+        // Fast at first, then 1px/ms for longer than the horizon
+        engine.addSample(1000, 0, 96);
+        float x = 1000;
+        for (long time = 104; time <= 304; time += 8) {
+            x += 8;
+            engine.addSample(x, 0, time);
+        }
+        engine.computeVelocity();
+
+        assertEquals(1000, engine.getVelocityX(), 1);
+        assertEquals(0, engine.getVelocityY(), 1);
+    }
+
+    @Test
+    public void computeVelocityStopsAtAPause() {
+        SwipeDecisionEngine engine = newEngine();
+        drag(engine, 5, 96);
+        // The pointer stopped for 50ms, then moves at 1px/ms
+        engine.addSample(480, 0, 146);
+        engine.computeVelocity();
+        assertEquals(0, engine.getVelocityX(), 0);
+
+        engine.addSample(488, 0, 154);
+        engine.computeVelocity();
+        assertEquals(1000, engine.getVelocityX(), 1);
+    }
+
+    @Test
+    public void predictOffsetExtrapolatesTheVelocity() {
+        SwipeDecisionEngine engine = newEngine();
+        drag(engine, 2, 48);
+
+        assertEquals(16, engine.predictOffset(56, 100), 0.5f);
+        assertEquals(5, engine.predictOffset(56, 5), 0);
+    }
+
+    @Test
+    public void predictOffsetRefusesUnreliablePredictions() {
+        SwipeDecisionEngine engine = newEngine();
+        drag(engine, 2, 8);
+        // Too few samples
+        assertEquals(0, engine.predictOffset(16, 100), 0);
+
+        drag(engine, 2, 48);
+        // Too far ahead
+        assertEquals(0, engine.predictOffset(48 + 41, 100), 0);
+
+        // Just turned back
+        engine.addSample(90, 0, 56);
+        assertEquals(0, engine.predictOffset(64, 100), 0);
+    }
+
+    @Test
+    public void takePredictionErrorComparesWithTheLaterSamples() {
+        SwipeDecisionEngine engine = newEngine();
+        drag(engine, 2, 48);
+        assertTrue(Float.isNaN(engine.takePredictionError()));
+        engine.predictOffset(56, 100);
+        // Not caught up with yet
+        assertTrue(Float.isNaN(engine.takePredictionError()));
+
+        // At 56ms the pointer was at 108 instead of the predicted 112
+        engine.addSample(120, 0, 64);
+        assertEquals(4, engine.takePredictionError(), 0.5f);
+        assertTrue(Float.isNaN(engine.takePredictionError()));
+    }
+}
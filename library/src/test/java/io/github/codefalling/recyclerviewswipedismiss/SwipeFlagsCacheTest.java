@@ -0,0 +1,38 @@
+package io.github.codefalling.recyclerviewswipedismiss;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SwipeFlagsCacheTest {
+    @Test
+    public void keepsFlagsByKeyPastItsInitialCapacity() {
+        SwipeFlagsCache cache = new SwipeFlagsCache(2);
+        for (long key = 10; key > -10; key -= 3) {
+            cache.put(key, (int) (key & 15));
+        }
+        assertEquals(7, cache.size());
+        for (long key = 10; key > -10; key -= 3) {
+            assertEquals((int) (key & 15), cache.get(key));
+        }
+        assertEquals(SwipeFlagsCache.MISSING, cache.get(0));
+    }
+
+    @Test
+    public void removesAndReplaces() {
+        SwipeFlagsCache cache = new SwipeFlagsCache(4);
+        cache.put(Long.MAX_VALUE, 1);
+        cache.put(Long.MIN_VALUE, 2);
+        cache.put(5, 3);
+        cache.put(5, 4);
+        cache.remove(Long.MIN_VALUE);
+        cache.remove(6);
+        assertEquals(2, cache.size());
+        assertEquals(SwipeFlagsCache.MISSING, cache.get(Long.MIN_VALUE));
+        assertEquals(4, cache.get(5));
+        assertEquals(1, cache.get(Long.MAX_VALUE));
+
+        cache.clear();
+        assertEquals(SwipeFlagsCache.MISSING, cache.get(5));
+    }
+}